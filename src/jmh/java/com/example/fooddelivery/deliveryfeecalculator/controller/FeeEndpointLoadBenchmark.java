@@ -0,0 +1,106 @@
+package com.example.fooddelivery.deliveryfeecalculator.controller;
+
+import com.example.fooddelivery.deliveryfeecalculator.DeliveryFeeCalculatorApplication;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import com.example.fooddelivery.deliveryfeecalculator.service.DeliveryFeeCalculatorService;
+import com.example.fooddelivery.deliveryfeecalculator.service.WeatherTimeline;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of GET /fee/{city}/{vehicle} with requests handled on Tomcat's platform thread pool or on virtual threads
+ * (app.virtual-threads.enabled, requires Java 21). The build runs only the platform thread pool on older Java versions.
+ * <p>
+ * The application is started with an embedded server on a random port and called over HTTP by more concurrent
+ * clients than Tomcat has worker threads (200 by default). Throughput and the latency percentiles (sample mode)
+ * are compared for the latest weather data (in memory) and for weather data older than the timeline window,
+ * which is read from the database with JDBC. The timeline window is shortened to two days for that, the weather data
+ * of the historical requests is three and a half days old.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(400)
+public class FeeEndpointLoadBenchmark {
+    private static final int HISTORY_DAYS = 7;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private URI latest;
+    private URI historical;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (threads.equals("virtual") && Runtime.version().feature() < 21)
+            throw new IllegalStateException("Virtual threads require Java 21, run with -p threads=platform on Java " + Runtime.version().feature());
+        context = new SpringApplicationBuilder(DeliveryFeeCalculatorApplication.class)
+                .run("--server.port=0",
+                        "--app.virtual-threads.enabled=" + threads.equals("virtual"),
+                        "--spring.datasource.generate-unique-name=true",
+                        "--app.weather.cron=-",
+                        "--app.weather.retention.cron=-",
+                        "--app.weather.forecast.import-on-startup=false",
+                        "--app.weather.timeline-window=PT48H",
+                        "--app.cities.refresh-rate=3600000",
+                        "--logging.level.org.springframework.jdbc=WARN");
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        for (int hour = 0; hour < HISTORY_DAYS * 24; hour++) {
+            WeatherData weatherData = new WeatherData();
+            weatherData.setName("Tallinn-Harku");
+            weatherData.setWMO("26038");
+            weatherData.setAir_temp(-2.1);
+            weatherData.setWind_speed(4.7);
+            weatherData.setWeather_phenomenon("Light snow shower");
+            weatherData.setTimestamp(now.minus(hour, ChronoUnit.HOURS));
+            weatherDataList.add(weatherData);
+        }
+        context.getBean(WeatherDataRepository.class).upsertAll(weatherDataList);
+        context.getBean(WeatherTimeline.class).load();
+        context.getBean(DeliveryFeeCalculatorService.class).loadLatestWeatherData();
+
+        String baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        latest = URI.create(baseUrl + "/fee/tallinn/bike");
+        historical = URI.create(baseUrl + "/fee/tallinn/bike?at=" + now.minus(HISTORY_DAYS / 2, ChronoUnit.DAYS).plus(30, ChronoUnit.MINUTES));
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private String get(URI uri) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw new IllegalStateException("Unexpected HTTP status " + response.statusCode());
+        return response.body();
+    }
+
+    @Benchmark
+    public String latestFee() throws IOException, InterruptedException {
+        return get(latest);
+    }
+
+    @Benchmark
+    public String historicalFee() throws IOException, InterruptedException {
+        return get(historical);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the delivery fee business rules, mainly the matching of weather phenomena for the weather phenomenon
+ * extra fee. Forbidden phenomena are measured as well, rejected requests are returned as results like accepted ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeliveryFeeCalculatorBenchmark {
+    private static final City TALLINN = new City(1L, "Tallinn", "Tallinn-Harku", 4, 3.5, 3);
+
+    @Param({"Clear", "Light snow shower", "Moderate rain", "Moderate sleet", "Thunderstorm", "Glaze"})
+    private String phenomenon;
+
+    private DeliveryFeeCalculator deliveryFeeCalculator;
+    private WeatherData weatherData;
+
+    @Setup
+    public void setUp() {
+        deliveryFeeCalculator = new DeliveryFeeCalculator();
+        weatherData = new WeatherData();
+        weatherData.setName("Tallinn-Harku");
+        weatherData.setWMO("26038");
+        weatherData.setAir_temp(-2.1);
+        weatherData.setWind_speed(4.7);
+        weatherData.setWeather_phenomenon(phenomenon);
+        weatherData.setTimestamp(Instant.now());
+    }
+
+    @Benchmark
+    public double calculateWPEF() {
+        return deliveryFeeCalculator.calculateWPEF("bike", weatherData);
+    }
+
+    @Benchmark
+    public FeeResult calculateFee() {
+        return deliveryFeeCalculator.calculateFee(TALLINN, "bike", weatherData);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.DeliveryFeeCalculatorApplication;
+import com.example.fooddelivery.deliveryfeecalculator.exception.ApiRequestException;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the delivery fee hot paths of the running application with 1k, 100k and 1M rows of weather data
+ * history in the H2 database.
+ * <p>
+ * History has one observation per hour for each station of the default cities. Fees at a recent time are
+ * calculated from the in-memory weather timeline, fees at an older time are looked up from the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DeliveryFeeCalculatorServiceBenchmark {
+    private static final String[] STATIONS = {"Tallinn-Harku", "Tartu-Tõravere", "Pärnu"};
+    private static final String[] WMO_CODES = {"26038", "26242", "41803"};
+    private static final int INSERT_BATCH_SIZE = 10000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private DeliveryFeeCalculatorService deliveryFeeCalculatorService;
+    private Instant recent;
+    private Instant historical;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DeliveryFeeCalculatorApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.generate-unique-name=true",
+                        "--app.weather.cron=-",
+                        "--app.weather.retention.cron=-",
+                        "--app.weather.forecast.import-on-startup=false",
+                        "--app.cities.refresh-rate=3600000",
+                        "--logging.level.org.springframework.jdbc=WARN");
+
+        Instant now = Instant.now();
+        WeatherDataRepository weatherDataRepository = context.getBean(WeatherDataRepository.class);
+        List<WeatherData> weatherDataList = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            WeatherData weatherData = new WeatherData();
+            weatherData.setName(STATIONS[i % STATIONS.length]);
+            weatherData.setWMO(WMO_CODES[i % STATIONS.length]);
+            weatherData.setAir_temp(-2.1);
+            weatherData.setWind_speed(4.7);
+            weatherData.setWeather_phenomenon("Light snow shower");
+            weatherData.setTimestamp(now.minus(i / STATIONS.length, ChronoUnit.HOURS));
+            weatherDataList.add(weatherData);
+            if (weatherDataList.size() == INSERT_BATCH_SIZE) {
+                weatherDataRepository.upsertAll(weatherDataList);
+                weatherDataList.clear();
+            }
+        }
+        weatherDataRepository.upsertAll(weatherDataList);
+
+        // Weather data was inserted after startup, so the in-memory state is loaded again
+        context.getBean(WeatherTimeline.class).load();
+        deliveryFeeCalculatorService = context.getBean(DeliveryFeeCalculatorService.class);
+        deliveryFeeCalculatorService.loadLatestWeatherData();
+
+        recent = now.minus(12, ChronoUnit.HOURS).plus(30, ChronoUnit.MINUTES);
+        historical = now.minus(rows / STATIONS.length / 2, ChronoUnit.HOURS).plus(30, ChronoUnit.MINUTES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public double calculateFee() throws ApiRequestException {
+        return deliveryFeeCalculatorService.calculateFee("Tallinn", "Bike");
+    }
+
+    @Benchmark
+    public double calculateFeeAtRecentTime() throws ApiRequestException {
+        return deliveryFeeCalculatorService.calculateFee("Tallinn", "Bike", recent);
+    }
+
+    @Benchmark
+    public double calculateFeeAtHistoricalTime() throws ApiRequestException {
+        return deliveryFeeCalculatorService.calculateFee("Tallinn", "Bike", historical);
+    }
+
+    @Benchmark
+    public WeatherData findLatest() throws ApiRequestException {
+        return deliveryFeeCalculatorService.findLatest("Tallinn");
+    }
+}
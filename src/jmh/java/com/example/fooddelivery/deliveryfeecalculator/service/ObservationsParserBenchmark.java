@@ -0,0 +1,83 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming observations parser with the previous DOM based parsing of the observations feed.
+ * <p>
+ * Run with the gc profiler (./gradlew jmh) to compare the allocation rate of both parsers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ObservationsParserBenchmark {
+    private static final Set<String> STATIONS = Set.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+
+    private byte[] observations;
+    private ObservationsParser observationsParser;
+
+    @Setup
+    public void setUp() throws Exception {
+        try (InputStream inputStream = getClass().getResourceAsStream("/observations.xml")) {
+            observations = inputStream.readAllBytes();
+        }
+        observationsParser = new ObservationsParser();
+    }
+
+    @Benchmark
+    public List<WeatherData> stax() throws Exception {
+        return observationsParser.parse(new ByteArrayInputStream(observations), STATIONS);
+    }
+
+    /**
+     * Previous implementation: the whole response is read into a String and parsed into a DOM document.
+     */
+    @Benchmark
+    public List<WeatherData> dom() throws Exception {
+        String response = new String(observations, StandardCharsets.UTF_8);
+
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        InputSource inputSource = new InputSource(new StringReader(response));
+        Document doc = dBuilder.parse(inputSource);
+        doc.getDocumentElement().normalize();
+        NodeList nList = doc.getElementsByTagName("station");
+        for (int i = 0; i < nList.getLength(); i++) {
+            Node nNode = nList.item(i);
+            if (nNode.getNodeType() == Node.ELEMENT_NODE) {
+                Element eElement = (Element) nNode;
+                WeatherData weatherData = new WeatherData();
+                String name = eElement.getElementsByTagName("name").item(0).getTextContent();
+                if (STATIONS.contains(name)) {
+                    weatherData.setName(name);
+                    weatherData.setWMO(eElement.getElementsByTagName("wmocode").item(0).getTextContent());
+                    weatherData.setAir_temp(Double.parseDouble(eElement.getElementsByTagName("airtemperature").item(0).getTextContent()));
+                    weatherData.setWind_speed(Double.parseDouble(eElement.getElementsByTagName("windspeed").item(0).getTextContent()));
+                    weatherData.setWeather_phenomenon(eElement.getElementsByTagName("phenomenon").item(0).getTextContent());
+                    weatherData.setTimestamp(Instant.now());
+                    weatherDataList.add(weatherData);
+                }
+            }
+        }
+        return weatherDataList;
+    }
+}
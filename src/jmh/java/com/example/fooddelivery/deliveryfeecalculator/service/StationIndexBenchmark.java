@@ -0,0 +1,64 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving the weather at the location of a delivery from the nearest stations, with about as many stations
+ * as there are in the observations feed and with ten times more.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StationIndexBenchmark {
+    private static final int LOCATIONS = 1024;
+    private static final double MAX_DISTANCE_KM = 50; // Default of app.weather.nearest.max-distance-km
+
+    @Param({"100", "1000"})
+    private int stations;
+
+    private StationIndex stationIndex;
+    private final double[] latitudes = new double[LOCATIONS];
+    private final double[] longitudes = new double[LOCATIONS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        for (int i = 0; i < stations; i++) {
+            WeatherData weatherData = new WeatherData();
+            weatherData.setName("Station " + i);
+            weatherData.setAir_temp(random.nextDouble() * 20 - 10);
+            weatherData.setWind_speed(random.nextDouble() * 15);
+            weatherData.setWeather_phenomenon("Light snow shower");
+            weatherData.setTimestamp(Instant.now());
+            weatherData.setLatitude(57.5 + random.nextDouble() * 2.2);
+            weatherData.setLongitude(21.8 + random.nextDouble() * 6.4);
+            weatherDataList.add(weatherData);
+        }
+        stationIndex = StationIndex.build(weatherDataList);
+        for (int i = 0; i < LOCATIONS; i++) {
+            latitudes[i] = 57.5 + random.nextDouble() * 2.2;
+            longitudes[i] = 21.8 + random.nextDouble() * 6.4;
+        }
+    }
+
+    @Benchmark
+    public WeatherData nearest() {
+        int i = next++ & (LOCATIONS - 1);
+        return stationIndex.nearest(latitudes[i], longitudes[i], MAX_DISTANCE_KM);
+    }
+
+    @Benchmark
+    public WeatherData interpolate() {
+        int i = next++ & (LOCATIONS - 1);
+        return stationIndex.interpolate(latitudes[i], longitudes[i], 3, MAX_DISTANCE_KM);
+    }
+}
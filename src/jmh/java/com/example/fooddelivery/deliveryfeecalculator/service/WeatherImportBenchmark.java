@@ -0,0 +1,69 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.DeliveryFeeCalculatorApplication;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures fetching and parsing of the observations feed through the running application.
+ * <p>
+ * The recorded observations feed (observations.xml) is served by a local HTTP server, so the benchmark does not
+ * depend on the weather portal and covers the HTTP client as well as the parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WeatherImportBenchmark {
+    private HttpServer server;
+    private ConfigurableApplicationContext context;
+    private DeliveryFeeCalculatorService deliveryFeeCalculatorService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        byte[] observations;
+        try (InputStream inputStream = getClass().getResourceAsStream("/observations.xml")) {
+            observations = inputStream.readAllBytes();
+        }
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/observations.php", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, observations.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(observations);
+            }
+        });
+        server.start();
+
+        context = new SpringApplicationBuilder(DeliveryFeeCalculatorApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.generate-unique-name=true",
+                        "--app.weather.url=http://localhost:" + server.getAddress().getPort() + "/observations.php",
+                        "--app.weather.cron=-",
+                        "--app.weather.retention.cron=-",
+                        "--app.weather.forecast.import-on-startup=false",
+                        "--app.cities.refresh-rate=3600000",
+                        "--logging.level.org.springframework.jdbc=WARN");
+        deliveryFeeCalculatorService = context.getBean(DeliveryFeeCalculatorService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public List<WeatherData> fetchLatestWeatherData() {
+        return deliveryFeeCalculatorService.fetchLatestWeatherData();
+    }
+}
@@ -4,9 +4,7 @@ package com.example.fooddelivery.deliveryfeecalculator;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.web.client.RestTemplate;
 
 
 @SpringBootApplication
@@ -18,9 +16,4 @@ public class DeliveryFeeCalculatorApplication {
         SpringApplication.run(DeliveryFeeCalculatorApplication.class, args);
     }
 
-    @Bean
-    public RestTemplate getRestTemplate() {
-        return new RestTemplate();
-    }
-
 }
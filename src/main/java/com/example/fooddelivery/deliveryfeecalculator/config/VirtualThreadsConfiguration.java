@@ -0,0 +1,88 @@
+package com.example.fooddelivery.deliveryfeecalculator.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * Opt-in mode that runs request handling and the scheduled tasks (weather data import, retention, city reload)
+ * on virtual threads instead of the fixed platform thread pools of Tomcat and the scheduler.
+ * <p>
+ * Enabled with app.virtual-threads.enabled=true. Virtual threads require Java 21 or newer, the application is
+ * compiled for Java 17, so the virtual thread API is looked up at startup and the application fails to start if
+ * the mode is enabled on an older Java version. After upgrading to Java 21 and Spring Boot 3.2 or newer, this class
+ * can be replaced with spring.threads.virtual.enabled=true.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    /**
+     * This method makes Tomcat handle every request on a new virtual thread.
+     *
+     * @return Customizer that replaces the worker thread pool of Tomcat with a virtual thread per task executor
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * This method replaces the default single-threaded scheduler, so the scheduled tasks run on virtual threads and
+     * a slow weather data import does not delay the other scheduled tasks.
+     *
+     * @return Scheduler of the @Scheduled tasks
+     */
+    @Bean
+    public TaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(4);
+        scheduler.setThreadFactory(newVirtualThreadFactory("scheduling-"));
+        return scheduler;
+    }
+
+    /**
+     * @return Executor that starts a new virtual thread for every task
+     * @throws IllegalStateException If virtual threads are not supported by the Java version
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw unsupported(e);
+        }
+    }
+
+    /**
+     * @param prefix Prefix of the names of the threads, followed by a counter
+     * @return Factory of named virtual threads
+     * @throws IllegalStateException If virtual threads are not supported by the Java version
+     */
+    static ThreadFactory newVirtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw unsupported(e);
+        }
+    }
+
+    private static IllegalStateException unsupported(ReflectiveOperationException e) {
+        return new IllegalStateException("Virtual threads require Java 21 or newer, running on Java "
+                + Runtime.version().feature() + ". Set app.virtual-threads.enabled=false", e);
+    }
+}
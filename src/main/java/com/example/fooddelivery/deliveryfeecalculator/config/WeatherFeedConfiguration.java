@@ -0,0 +1,29 @@
+package com.example.fooddelivery.deliveryfeecalculator.config;
+
+import com.example.fooddelivery.deliveryfeecalculator.service.WeatherFeedClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+
+/**
+ * Feed clients of the weather portal besides the client of the observations feed, which is the primary
+ * WeatherFeedClient bean. Every feed has its own client, as the validators of the conditional GET are per feed.
+ */
+@Configuration
+public class WeatherFeedConfiguration {
+
+    /**
+     * @return Client of the forecast feed, fetched with the same timeouts and retries as the observations feed
+     */
+    @Bean
+    public WeatherFeedClient forecastFeedClient(@Value("${app.weather.forecast.url}") String url,
+                                                @Value("${app.weather.fetch.connect-timeout}") Duration connectTimeout,
+                                                @Value("${app.weather.fetch.timeout}") Duration timeout,
+                                                @Value("${app.weather.fetch.max-attempts}") int maxAttempts,
+                                                @Value("${app.weather.fetch.retry-backoff}") Duration retryBackoff) {
+        return new WeatherFeedClient(url, connectTimeout, timeout, maxAttempts, retryBackoff);
+    }
+}
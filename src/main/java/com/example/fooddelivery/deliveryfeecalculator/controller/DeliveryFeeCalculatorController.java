@@ -1,13 +1,32 @@
 package com.example.fooddelivery.deliveryfeecalculator.controller;
 
+import com.example.fooddelivery.deliveryfeecalculator.exception.ApiException;
 import com.example.fooddelivery.deliveryfeecalculator.exception.ApiRequestException;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRequest;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResponse;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.ImportJob;
 import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
 import com.example.fooddelivery.deliveryfeecalculator.service.DeliveryFeeCalculatorService;
+import com.example.fooddelivery.deliveryfeecalculator.service.FeeStreamBroadcaster;
+import com.example.fooddelivery.deliveryfeecalculator.service.ForecastFeeService;
+import com.example.fooddelivery.deliveryfeecalculator.service.WeatherImportCoordinator;
+import com.example.fooddelivery.deliveryfeecalculator.service.WeatherImportJobs;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
 
 
 @RestController
@@ -15,61 +34,271 @@ import org.springframework.web.bind.annotation.*;
 public class DeliveryFeeCalculatorController {
 
     private DeliveryFeeCalculatorService deliveryFeeCalculatorService;
+    private final ResponseCachePolicy responseCachePolicy;
+    private final FeeStreamBroadcaster feeStreamBroadcaster;
+    private final WeatherImportCoordinator weatherImportCoordinator;
+    private final WeatherImportJobs weatherImportJobs;
+    private final ForecastFeeService forecastFeeService;
+
+    // Maximum number of delivery fee requests in a single batch request
+    @Value("${app.fee.batch.max-size}")
+    private int maxBatchSize;
 
     @Autowired
-    public DeliveryFeeCalculatorController(DeliveryFeeCalculatorService deliveryFeeCalculatorService) {
+    public DeliveryFeeCalculatorController(DeliveryFeeCalculatorService deliveryFeeCalculatorService, ResponseCachePolicy responseCachePolicy, FeeStreamBroadcaster feeStreamBroadcaster, WeatherImportCoordinator weatherImportCoordinator, WeatherImportJobs weatherImportJobs, ForecastFeeService forecastFeeService) {
         this.deliveryFeeCalculatorService = deliveryFeeCalculatorService;
+        this.responseCachePolicy = responseCachePolicy;
+        this.feeStreamBroadcaster = feeStreamBroadcaster;
+        this.weatherImportCoordinator = weatherImportCoordinator;
+        this.weatherImportJobs = weatherImportJobs;
+        this.forecastFeeService = forecastFeeService;
     }
 
     /**
      * This method saves fresh weather data into the database once every hour, 15 minutes after a full hour (HH:15:00).
      * <p>
-     * The method calls out deliveryFeeCalculatorService's method saveWeatherData(), which calls out fetchLatestWeatherData() method
-     * to fetch needed weather data to save into the database.
+     * If several instances of the application share the database, only one of them imports the weather data and
+     * the others load it from the database (see WeatherImportCoordinator).
      */
-
-    @Operation(summary = "To save fresh weather data into the database once every hour")
     // The frequency of the cronjob is configurable in application.properties file.
     @Scheduled(cron = "${app.weather.cron}")
     // New weather data is inserted once every hour, 15 minutes after a full hour (HH:15:00) == (cron = "0 15 * * * *").
     //@Scheduled(fixedRateString = "${app.weather.fixedRate}")
-    @PostMapping
-    public void saveWeatherData() {
-        deliveryFeeCalculatorService.saveWeatherData();
+    public void importWeatherData() {
+        weatherImportCoordinator.runScheduledImport();
+    }
+
+    /**
+     * This method requests fresh weather data to be saved into the database immediately.
+     * <p>
+     * The import runs as a job on the import thread and the request returns without waiting for it (see
+     * WeatherImportJobs). Requests made while an import job is queued or running get that job, so concurrent requests
+     * fetch the weather data once. Other instances of the application load the imported weather data from the database.
+     *
+     * @return 202 (Accepted) with the import job and its status URL in the Location header
+     */
+    @Operation(summary = "To save fresh weather data into the database immediately")
+    @PostMapping("/")
+    public ResponseEntity<ImportJob> saveWeatherData() {
+        ImportJob job = weatherImportJobs.submit();
+        return ResponseEntity.accepted()
+                .location(URI.create("/weather/import/" + job.getId()))
+                .body(job);
+    }
+
+    /**
+     * Get request to find the status of a weather data import job requested with POST /.
+     *
+     * @param id id of the import job
+     * @return status and duration of the import job, 404 if the job is unknown or too old
+     */
+    @Operation(summary = "To get the status of a requested weather data import.")
+    @GetMapping("/weather/import/{id}")
+    public ResponseEntity<ImportJob> findImportJob(@PathVariable long id) {
+        return ResponseEntity.of(weatherImportJobs.find(id));
     }
 
     /**
      * This method allows us to request calculated delivery fee based on recent weather data, city and vehicle.
+     * <p>
+     * If the time of the delivery is given, the delivery fee is calculated based on the weather data at that time
+     * (e.g. for recalculating the delivery fee of an older order).
+     * <p>
+     * If the coordinates of the delivery are given, the delivery fee is calculated based on the latest weather data of
+     * the station nearest to the delivery, or interpolated from the nearest stations. The regional base fee is still
+     * the base fee of the city.
+     * <p>
+     * If the time of a scheduled delivery is given, the delivery fee is looked up from the delivery fees precomputed
+     * for every hour of the weather forecast (see ForecastFeeService).
+     * <p>
+     * The delivery fee of the city based on recent weather data is the same for every request until the next weather data
+     * import, so it is returned with an ETag of the weather data version and may be cached until the next import.
+     * A request with a matching If-None-Match header gets a 304 (Not Modified) response without a body.
      *
-     * @param city    City of delivery. Allowed cities: Tallinn, Tartu, Pärnu
-     * @param vehicle Vehicle of delivery. Allowed vehicles: Car, scooter, bike
-     * @return The total delivery fee calculated using weather data, city and vehicle type
-     * @throws ApiRequestException If any of the input parameters are incorrect or any business rules violated
+     * @param city        City of delivery. Allowed cities: Tallinn, Tartu, Pärnu
+     * @param vehicle     Vehicle of delivery. Allowed vehicles: Car, scooter, bike
+     * @param at          Optional time of delivery as an ISO-8601 instant, e.g. 2023-03-01T12:00:00Z
+     * @param lat         Optional latitude of the delivery (WGS84), given together with lon
+     * @param lon         Optional longitude of the delivery (WGS84), given together with lat
+     * @param interpolate Whether the weather at the coordinates is interpolated from the nearest stations
+     * @param deliverAt   Optional time of a scheduled delivery as an ISO-8601 instant, within the weather forecast
+     * @return The total delivery fee calculated using weather data, city and vehicle type, or the error
+     * if any of the input parameters are incorrect or any business rules violated
+     * @throws ApiRequestException If the coordinates are invalid or given together with the time of delivery, or the time
+     *                             of a scheduled delivery is given together with the time or coordinates of delivery
      */
 
     @Operation(summary = "To request calculated delivery fee based on recent weather data, city and vehicle.")
     @GetMapping("/fee/{city}/{vehicle}")
-    public double calculateFee(@PathVariable("city") String city, @PathVariable("vehicle") String vehicle) throws ApiRequestException {
-        double fee;
-        try {
-            fee = deliveryFeeCalculatorService.calculateFee(city, vehicle);
-        } catch (ApiRequestException e) {
-            throw new ApiRequestException(e.getMessage());
+    public ResponseEntity<?> calculateFee(@PathVariable("city") String city, @PathVariable("vehicle") String vehicle,
+                                          @RequestParam(value = "at", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at,
+                                          @RequestParam(value = "lat", required = false) Double lat,
+                                          @RequestParam(value = "lon", required = false) Double lon,
+                                          @RequestParam(value = "interpolate", defaultValue = "false") boolean interpolate,
+                                          @RequestParam(value = "deliverAt", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant deliverAt) throws ApiRequestException {
+        String version = at == null && lat == null && lon == null && deliverAt == null ? deliveryFeeCalculatorService.getSnapshotVersion() : null;
+        FeeResult result = quote(city, vehicle, at, lat, lon, interpolate, deliverAt);
+        if (!result.isSuccess()) {
+            HttpStatus status = status(result);
+            return ResponseEntity.status(status).body(new ApiException(result.getReason(), status));
         }
-        return fee;
+        double fee = result.getBreakdown().getTotal();
+        return version == null ? ResponseEntity.ok(fee) : cacheable(version, fee);
+    }
+
+    /**
+     * This method allows us to request the breakdown of the delivery fee (regional base fee and extra fees) based on
+     * recent weather data or the weather data at the given time, city and vehicle.
+     * <p>
+     * Rejected requests get the outcome and the reason of the rejection in the same structure, e.g. when the usage
+     * of the vehicle type is forbidden in the weather conditions. Accepts the same parameters and is cached like
+     * the total delivery fee.
+     *
+     * @param city        City of delivery. Allowed cities: Tallinn, Tartu, Pärnu
+     * @param vehicle     Vehicle of delivery. Allowed vehicles: Car, scooter, bike
+     * @param at          Optional time of delivery as an ISO-8601 instant, e.g. 2023-03-01T12:00:00Z
+     * @param lat         Optional latitude of the delivery (WGS84), given together with lon
+     * @param lon         Optional longitude of the delivery (WGS84), given together with lat
+     * @param interpolate Whether the weather at the coordinates is interpolated from the nearest stations
+     * @param deliverAt   Optional time of a scheduled delivery as an ISO-8601 instant, within the weather forecast
+     * @return Breakdown of the delivery fee or the outcome and reason of the rejection
+     * @throws ApiRequestException If the coordinates are invalid or given together with the time of delivery, or the time
+     *                             of a scheduled delivery is given together with the time or coordinates of delivery
+     */
+    @Operation(summary = "To request the breakdown of the delivery fee based on recent weather data, city and vehicle.")
+    @GetMapping("/fee/{city}/{vehicle}/breakdown")
+    public ResponseEntity<FeeResult> calculateFeeBreakdown(@PathVariable("city") String city, @PathVariable("vehicle") String vehicle,
+                                                           @RequestParam(value = "at", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at,
+                                                           @RequestParam(value = "lat", required = false) Double lat,
+                                                           @RequestParam(value = "lon", required = false) Double lon,
+                                                           @RequestParam(value = "interpolate", defaultValue = "false") boolean interpolate,
+                                                           @RequestParam(value = "deliverAt", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant deliverAt) throws ApiRequestException {
+        String version = at == null && lat == null && lon == null && deliverAt == null ? deliveryFeeCalculatorService.getSnapshotVersion() : null;
+        FeeResult result = quote(city, vehicle, at, lat, lon, interpolate, deliverAt);
+        if (!result.isSuccess()) return ResponseEntity.status(status(result)).body(result);
+        return version == null ? ResponseEntity.ok(result) : cacheable(version, result);
+    }
+
+    private FeeResult quote(String city, String vehicle, Instant at, Double lat, Double lon, boolean interpolate, Instant deliverAt) throws ApiRequestException {
+        if (deliverAt != null) {
+            if (at != null || lat != null || lon != null)
+                throw new ApiRequestException("Time of a scheduled delivery can not be combined with the time or coordinates of delivery!");
+            return forecastFeeService.quote(city, vehicle, deliverAt);
+        }
+        if (lat == null && lon == null) {
+            return at == null ? deliveryFeeCalculatorService.quote(city, vehicle) : deliveryFeeCalculatorService.quote(city, vehicle, at);
+        }
+        if (lat == null || lon == null) throw new ApiRequestException("Both lat and lon must be given!");
+        if (!(Math.abs(lat) <= 90) || !(Math.abs(lon) <= 180)) throw new ApiRequestException("Invalid coordinates!");
+        if (at != null) throw new ApiRequestException("Coordinates can not be combined with the time of delivery!");
+        return deliveryFeeCalculatorService.quote(city, vehicle, lat, lon, interpolate);
+    }
+
+    /**
+     * Maps the outcome of a delivery fee request to the HTTP status of the response. All rejections are client errors
+     * (400), as before results were introduced, so clients can keep relying on the status code.
+     *
+     * @param result Result of a delivery fee request
+     * @return HTTP status of the response
+     */
+    private static HttpStatus status(FeeResult result) {
+        return switch (result.getOutcome()) {
+            case SUCCESS -> HttpStatus.OK;
+            case FORBIDDEN, INVALID_CITY, INVALID_VEHICLE, NO_WEATHER_DATA, STALE -> HttpStatus.BAD_REQUEST;
+        };
+    }
+
+    /**
+     * This method allows us to request calculated delivery fees for several city and vehicle combinations at once.
+     * <p>
+     * Every request in the batch gets its own result containing either the delivery fee or the reason why the delivery fee
+     * could not be calculated, so a single invalid request does not fail the whole batch.
+     *
+     * @param feeRequests List of cities, vehicles and optional delivery times
+     * @return Delivery fee or the error message for every request in the same order
+     * @throws ApiRequestException If there are more requests than allowed in a single batch
+     */
+    @Operation(summary = "To request calculated delivery fees for several cities and vehicles at once.")
+    @PostMapping("/fee/batch")
+    public List<FeeResponse> calculateFees(@RequestBody List<FeeRequest> feeRequests) throws ApiRequestException {
+        if (feeRequests.size() > maxBatchSize)
+            throw new ApiRequestException("Too many requests in a batch! Maximum allowed is " + maxBatchSize);
+        return deliveryFeeCalculatorService.calculateFees(feeRequests);
     }
 
+    /**
+     * Reloads the cities, their weather stations and regional base fees from the database.
+     * <p>
+     * Cities are also reloaded periodically (configurable in application.properties file), this request applies
+     * the changes immediately.
+     */
+    @Operation(summary = "To reload cities, their weather stations and regional base fees from the database.")
+    @PostMapping("/cities/reload")
+    public void reloadCities() {
+        deliveryFeeCalculatorService.reloadCities();
+    }
+
+    /**
+     * Reloads the extra fee rules (air temperature, wind speed and weather phenomenon extra fees) from the database.
+     * <p>
+     * Rules are also reloaded periodically (configurable in application.properties file), this request applies
+     * the changes immediately.
+     *
+     * @throws ApiRequestException If the rules in the database are invalid, the previous rules stay in use in that case
+     */
+    @Operation(summary = "To reload the extra fee rules from the database.")
+    @PostMapping("/fee/rules/reload")
+    public void reloadFeeRules() throws ApiRequestException {
+        deliveryFeeCalculatorService.reloadFeeRules();
+    }
+
+    /**
+     * Subscribes to the stream of delivery fee changes (server-sent events).
+     * <p>
+     * The current delivery fees of every city and vehicle and the latest weather data of the cities' stations are sent
+     * immediately as a "fees" event, and again whenever they change (after weather data imports and fee rule or city
+     * changes), so clients can stay current without polling. The id of the event is the version used as the ETag.
+     *
+     * @return Stream of the delivery fee snapshots, or 503 if the maximum number of subscribers is reached
+     */
+    @Operation(summary = "To subscribe to the stream of delivery fee and weather data changes (server-sent events).")
+    @GetMapping(value = "/fee/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamFees() {
+        return feeStreamBroadcaster.subscribe()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
 
     /**
      * Get request to find the latest weather information for specified station from database.
+     * <p>
+     * Returned with an ETag of the weather data version and may be cached until the next weather data import.
      *
      * @param stationName name of a station
      * @return latest weather data from a specific station
      */
     @Operation(summary = "To get the latest weather information for specified station from database.")
     @GetMapping("/weather/{stationName}")
-    public WeatherData findLatest(@PathVariable String stationName) throws ApiRequestException {
-        return deliveryFeeCalculatorService.findLatest(stationName);
+    public ResponseEntity<WeatherData> findLatest(@PathVariable String stationName) throws ApiRequestException {
+        String version = deliveryFeeCalculatorService.getSnapshotVersion();
+        return cacheable(version, deliveryFeeCalculatorService.findLatest(stationName));
+    }
+
+    /**
+     * Creates a response that may be cached until the next weather data import. Only successful responses are cached,
+     * errors are handled before and always recalculated.
+     * <p>
+     * Spring responds with 304 (Not Modified) and without a body if the ETag matches the If-None-Match header.
+     *
+     * @param version Version of the weather data, read before the body was created
+     * @param body    Body of the response
+     * @return Response with a strong ETag and Cache-Control headers
+     */
+    private <T> ResponseEntity<T> cacheable(String version, T body) {
+        return ResponseEntity.ok()
+                .eTag(version)
+                .cacheControl(responseCachePolicy.cacheControl())
+                .body(body);
     }
 
 }
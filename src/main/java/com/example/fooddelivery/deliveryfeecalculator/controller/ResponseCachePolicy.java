@@ -0,0 +1,54 @@
+package com.example.fooddelivery.deliveryfeecalculator.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+
+/**
+ * Cache-Control of the responses that only change when weather data is imported.
+ * <p>
+ * Responses may be cached until the next scheduled weather data import, plus a grace period for the import to
+ * complete, so a response cached right before the import finishes is not kept for a whole import period. If the
+ * scheduled import is disabled, caches have to revalidate every response with its ETag.
+ */
+@Component
+public class ResponseCachePolicy {
+    private final CronExpression importSchedule; // null if the scheduled import is disabled
+    private final Duration importGrace;
+
+    @Autowired
+    public ResponseCachePolicy(@Value("${app.weather.cron}") String importCron,
+                               @Value("${app.http.cache.import-grace}") Duration importGrace) {
+        this.importSchedule = Scheduled.CRON_DISABLED.equals(importCron) ? null : CronExpression.parse(importCron);
+        this.importGrace = importGrace;
+    }
+
+    /**
+     * @return Cache-Control of a response created now
+     */
+    public CacheControl cacheControl() {
+        return cacheControl(Instant.now());
+    }
+
+    /**
+     * @param now Time of the response
+     * @return Public Cache-Control with max-age until the next import is completed, no-cache if imports are not scheduled
+     */
+    CacheControl cacheControl(Instant now) {
+        if (importSchedule == null) return CacheControl.noCache();
+        // Imports started less than the grace period ago may not be completed yet
+        ZonedDateTime nextImport = importSchedule.next(ZonedDateTime.ofInstant(now.minus(importGrace), ZoneId.systemDefault()));
+        if (nextImport == null) return CacheControl.noCache();
+        Duration maxAge = Duration.between(now, nextImport.toInstant().plus(importGrace));
+        return CacheControl.maxAge(maxAge.isNegative() ? Duration.ZERO : maxAge).cachePublic();
+    }
+}
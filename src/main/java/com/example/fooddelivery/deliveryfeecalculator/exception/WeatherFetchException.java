@@ -0,0 +1,14 @@
+package com.example.fooddelivery.deliveryfeecalculator.exception;
+
+/**
+ * Thrown when the weather data can not be fetched from the weather portal or the fetched feed can not be parsed,
+ * so no weather data was imported.
+ */
+public class WeatherFetchException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public WeatherFetchException(String message, Throwable cause) {
+        super(message + ": " + cause, cause);
+    }
+
+}
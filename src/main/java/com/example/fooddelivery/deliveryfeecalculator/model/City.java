@@ -0,0 +1,38 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class City {
+    @Id
+    private Long id;
+    private String name; // Name of the city
+    private String station; // Name of the station whose weather data is used for the city
+    private double car_fee; // Regional base fee for car
+    private double scooter_fee; // Regional base fee for scooter
+    private double bike_fee; // Regional base fee for bike
+
+    /**
+     * Returns the regional base fee of the city for the given vehicle.
+     *
+     * @param vehicle Type of the vehicle (lowercase)
+     * @return Regional base fee or 0 if vehicle is unknown
+     */
+    public double getBaseFee(String vehicle) {
+        switch (vehicle) {
+            case "car":
+                return car_fee;
+            case "scooter":
+                return scooter_fee;
+            case "bike":
+                return bike_fee;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.*;
+
+import org.springframework.data.annotation.Id;
+
+import java.time.LocalDate;
+
+/**
+ * Downsampled weather data of a station for a single day.
+ * <p>
+ * Weather data older than the retention period is compacted into daily aggregates before it is deleted.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class DailyWeather {
+    @Id
+    private Long id;
+    private String name; // Name of the station
+    private LocalDate date; // Date of the observations
+    private double min_air_temp; // Lowest air temperature of the day
+    private double max_air_temp; // Highest air temperature of the day
+    private double max_wind_speed; // Highest wind speed of the day
+    private String worst_phenomenon; // Weather phenomenon of the day that affects delivery fees the most
+}
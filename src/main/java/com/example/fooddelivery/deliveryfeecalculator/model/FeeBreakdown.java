@@ -0,0 +1,25 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.Value;
+
+/**
+ * Immutable result of a delivery fee calculation.
+ * <p>
+ * Contains every component of the delivery fee, so the same result can be shared between threads and requests.
+ */
+@Value
+public class FeeBreakdown {
+    String city; // City of the delivery
+    String vehicle; // Vehicle of the delivery
+    double RBF; // Regional base fee
+    double ATEF; // Air temperature extra fee
+    double WSEF; // Wind speed extra fee
+    double WPEF; // Weather phenomenon extra fee
+
+    /**
+     * @return The total delivery fee (sum of all fee components)
+     */
+    public double getTotal() {
+        return RBF + ATEF + WSEF + WPEF;
+    }
+}
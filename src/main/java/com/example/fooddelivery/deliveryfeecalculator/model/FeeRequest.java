@@ -0,0 +1,19 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Single delivery fee request of a batch request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeeRequest {
+    private String city; // City of the delivery
+    private String vehicle; // Vehicle of the delivery
+    private Instant timestamp; // Time of the delivery, latest weather data is used if not given
+}
@@ -0,0 +1,19 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Result of a single delivery fee request of a batch request.
+ * <p>
+ * Contains either the calculated delivery fee or the reason why the delivery fee could not be calculated.
+ */
+@Value
+public class FeeResponse {
+    String city; // City of the delivery
+    String vehicle; // Vehicle of the delivery
+    Instant timestamp; // Time of the delivery
+    Double fee; // Calculated delivery fee, null if the delivery fee could not be calculated
+    String error; // Reason why the delivery fee could not be calculated, null if the delivery fee was calculated
+}
@@ -0,0 +1,59 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Value;
+
+/**
+ * Immutable result of a delivery fee request.
+ * <p>
+ * Contains either the breakdown of the delivery fee or the reason why the delivery fee can not be given, so rejected
+ * requests (e.g. forbidden vehicle types during a storm) are returned like any other result instead of being thrown.
+ * Results of the fixed rejections are shared constants.
+ */
+@Value
+public class FeeResult {
+    public static final FeeResult INVALID_CITY = rejected(Outcome.INVALID_CITY, "Invalid city!");
+    public static final FeeResult INVALID_VEHICLE = rejected(Outcome.INVALID_VEHICLE, "Invalid vehicle type!");
+    public static final FeeResult FORBIDDEN = rejected(Outcome.FORBIDDEN, "Usage of selected vehicle type is forbidden");
+
+    Outcome outcome; // Outcome of the request
+    FeeBreakdown breakdown; // Breakdown of the delivery fee, null if the request was rejected
+    String reason; // Reason why the request was rejected, null if the delivery fee was calculated
+
+    /**
+     * Outcome of a delivery fee request.
+     */
+    public enum Outcome {
+        SUCCESS, // Delivery fee was calculated
+        FORBIDDEN, // Usage of the vehicle type is forbidden in the weather conditions
+        INVALID_CITY, // City is not in the city registry
+        INVALID_VEHICLE, // Vehicle type is unknown
+        NO_WEATHER_DATA, // There is no weather data of the city's station
+        STALE // Weather data of the city's station is outdated
+    }
+
+    /**
+     * @param breakdown Breakdown of the calculated delivery fee
+     * @return Successful result
+     */
+    public static FeeResult success(FeeBreakdown breakdown) {
+        return new FeeResult(Outcome.SUCCESS, breakdown, null);
+    }
+
+    /**
+     * @param outcome Reason of the rejection
+     * @param reason  Error message
+     * @return Rejected result
+     */
+    public static FeeResult rejected(Outcome outcome, String reason) {
+        return new FeeResult(outcome, null, reason);
+    }
+
+    /**
+     * @return true if the delivery fee was calculated
+     */
+    @JsonIgnore
+    public boolean isSuccess() {
+        return outcome == Outcome.SUCCESS;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+/**
+ * Business rule of an extra fee, stored in the FEE_RULE table.
+ * <p>
+ * Air temperature (ATEF) and wind speed (WSEF) rules apply to a range of values, weather phenomenon (WPEF) rules apply
+ * to a phenomenon category. A rule either adds the fee or forbids the usage of the vehicle.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class FeeRule {
+    public static final String ATEF = "ATEF"; // Air temperature extra fee
+    public static final String WSEF = "WSEF"; // Wind speed extra fee
+    public static final String WPEF = "WPEF"; // Weather phenomenon extra fee
+
+    @Id
+    private Long id;
+    private String component; // Extra fee of the rule: ATEF, WSEF or WPEF
+    private String vehicle; // Vehicle type the rule applies to (lowercase)
+    private Double min_value; // Lower bound of air temperature or wind speed, null if unbounded
+    private boolean min_inclusive; // Whether the lower bound itself is in the range
+    private Double max_value; // Upper bound of air temperature or wind speed, null if unbounded
+    private boolean max_inclusive; // Whether the upper bound itself is in the range
+    private String phenomenon; // Weather phenomenon category of WPEF rules (PhenomenonCategory)
+    private double fee; // Extra fee
+    private boolean forbidden; // Usage of the vehicle is forbidden instead of adding the fee
+
+    /**
+     * @return Rule of air temperature or wind speed between the bounds
+     */
+    public static FeeRule range(String component, String vehicle, Double min, boolean minInclusive,
+                                Double max, boolean maxInclusive, double fee, boolean forbidden) {
+        return new FeeRule(null, component, vehicle, min, minInclusive, max, maxInclusive, null, fee, forbidden);
+    }
+
+    /**
+     * @return Rule of a weather phenomenon category
+     */
+    public static FeeRule phenomenon(String vehicle, PhenomenonCategory phenomenon, double fee, boolean forbidden) {
+        return new FeeRule(null, WPEF, vehicle, null, false, null, false, phenomenon.name(), fee, forbidden);
+    }
+}
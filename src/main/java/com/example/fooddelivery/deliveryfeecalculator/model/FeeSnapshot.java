@@ -0,0 +1,16 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Delivery fees of every city and vehicle combination and the weather data they were calculated from,
+ * pushed to the subscribers of the fee stream after every change.
+ */
+@Value
+public class FeeSnapshot {
+    String version; // Version of the delivery fees, the same as the ETag of the fee responses
+    Map<String, Map<String, FeeResult>> fees; // Delivery fee or the reason of the rejection by city and vehicle
+    Map<String, WeatherData> stations; // Latest weather data by the name of the station of the cities
+}
@@ -0,0 +1,18 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Weather forecast of a single period (night or day) of the forecast feed of the Estonian Environment Agency.
+ * Forecast values are stored as weather data, so delivery fees are calculated from them like from observations.
+ */
+@Value
+public class ForecastPeriod {
+    Instant start; // Start of the period (inclusive)
+    Instant end; // End of the period (exclusive)
+    WeatherData general; // Forecast of the whole country, null if the feed has no temperature for the period
+    Map<String, WeatherData> places; // Forecasts of the places of the feed by place name
+}
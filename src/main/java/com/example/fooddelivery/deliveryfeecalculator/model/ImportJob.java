@@ -0,0 +1,90 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Immutable state of a weather data import requested with POST /, returned by the status endpoint of the job.
+ * Every change of the state creates a new instance.
+ */
+@Value
+public class ImportJob {
+    long id; // Id of the job, increasing in the order of the requests
+    Status status; // State of the job
+    Instant requested; // Time of the first request that the job was created for
+    Instant started; // Time the import started, null while queued
+    Instant finished; // Time the import finished, null until finished
+    Integer imported; // Number of stations whose weather data was imported, null unless succeeded
+    String error; // Error message of a failed import, null otherwise
+
+    /**
+     * State of an import job.
+     */
+    public enum Status {
+        QUEUED, // Waiting for the import thread
+        RUNNING, // Fetching and saving the weather data
+        SUCCEEDED, // Weather data was imported, or the feed had not changed since the previous import (imported is 0)
+        FAILED, // Weather data could not be fetched, parsed or saved, weather data was not changed
+        COALESCED // Another instance was importing the weather data or had just imported it, its import is used
+    }
+
+    /**
+     * @param id        Id of the job
+     * @param requested Time of the request
+     * @return Job waiting for the import thread
+     */
+    public static ImportJob queued(long id, Instant requested) {
+        return new ImportJob(id, Status.QUEUED, requested, null, null, null, null);
+    }
+
+    /**
+     * @param started Time the import started
+     * @return This job in the running state
+     */
+    public ImportJob running(Instant started) {
+        return new ImportJob(id, Status.RUNNING, requested, started, null, null, null);
+    }
+
+    /**
+     * @param finished Time the import finished
+     * @param imported Number of stations whose weather data was imported
+     * @return This job in the succeeded state
+     */
+    public ImportJob succeeded(Instant finished, int imported) {
+        return new ImportJob(id, Status.SUCCEEDED, requested, started, finished, imported, null);
+    }
+
+    /**
+     * @param finished Time the import was found to be run by another instance
+     * @return This job in the coalesced state
+     */
+    public ImportJob coalesced(Instant finished) {
+        return new ImportJob(id, Status.COALESCED, requested, started, finished, null, null);
+    }
+
+    /**
+     * @param finished Time the import failed
+     * @param error    Error message
+     * @return This job in the failed state
+     */
+    public ImportJob failed(Instant finished, String error) {
+        return new ImportJob(id, Status.FAILED, requested, started, finished, null, error);
+    }
+
+    /**
+     * @return true if the job is queued or running
+     */
+    public boolean isActive() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+
+    /**
+     * @return Duration of the import in milliseconds, null until the import has finished
+     */
+    public Long getDurationMillis() {
+        if (started == null || finished == null) return null;
+        return Duration.between(started, finished).toMillis();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.fooddelivery.deliveryfeecalculator.model;
+
+import java.util.Map;
+
+/**
+ * Category of a weather phenomenon, as far as it matters for the weather phenomenon extra fee (WPEF).
+ * <p>
+ * Weather phenomena of the feed are free text (e.g. "Light snow shower", "Moderate sleet"). They are classified once
+ * when weather data is imported: the phenomena of the Environment Agency are looked up from a table, other phenomena
+ * are classified by the first keyword found in the phenomenon, in the order of the constants, so "snow" and "sleet"
+ * take precedence over "rain", which takes precedence over "glaze", "hail" and "thunder".
+ */
+public enum PhenomenonCategory {
+    SNOW("snow"),
+    SLEET("sleet"),
+    RAIN("rain"),
+    GLAZE("glaze"),
+    HAIL("hail"),
+    THUNDER("thunder"),
+    /**
+     * Any other phenomenon (e.g. clear, cloudy, mist) or no phenomenon at all.
+     */
+    OTHER(null);
+
+    private static final PhenomenonCategory[] VALUES = values();
+
+    // Weather phenomena of the observations feed of the Environment Agency. Showers are not classified as rain,
+    // because the phenomenon does not mention rain (the same result as classifying by the keywords)
+    private static final Map<String, PhenomenonCategory> PHENOMENA = Map.ofEntries(
+            Map.entry("Clear", OTHER),
+            Map.entry("Few clouds", OTHER),
+            Map.entry("Variable clouds", OTHER),
+            Map.entry("Cloudy with clear spells", OTHER),
+            Map.entry("Overcast", OTHER),
+            Map.entry("Light snow shower", SNOW),
+            Map.entry("Moderate snow shower", SNOW),
+            Map.entry("Heavy snow shower", SNOW),
+            Map.entry("Light shower", OTHER),
+            Map.entry("Moderate shower", OTHER),
+            Map.entry("Heavy shower", OTHER),
+            Map.entry("Light rain", RAIN),
+            Map.entry("Moderate rain", RAIN),
+            Map.entry("Heavy rain", RAIN),
+            Map.entry("Glaze", GLAZE),
+            Map.entry("Light sleet", SLEET),
+            Map.entry("Moderate sleet", SLEET),
+            Map.entry("Light snowfall", SNOW),
+            Map.entry("Moderate snowfall", SNOW),
+            Map.entry("Heavy snowfall", SNOW),
+            Map.entry("Blowing snow", SNOW),
+            Map.entry("Drifting snow", SNOW),
+            Map.entry("Hail", HAIL),
+            Map.entry("Mist", OTHER),
+            Map.entry("Fog", OTHER),
+            Map.entry("Thunder", THUNDER),
+            Map.entry("Thunderstorm", THUNDER));
+
+    private final String keyword; // Lowercase keyword of the phenomena of the category
+
+    PhenomenonCategory(String keyword) {
+        this.keyword = keyword;
+    }
+
+    /**
+     * Classifies a weather phenomenon of the feed.
+     *
+     * @param phenomenon Weather phenomenon, e.g. "Light snow shower" (case-insensitive), may be null
+     * @return Category of the phenomenon, OTHER if none of the keywords is found
+     */
+    public static PhenomenonCategory classify(String phenomenon) {
+        if (phenomenon == null || phenomenon.isEmpty()) return OTHER;
+        PhenomenonCategory known = PHENOMENA.get(phenomenon);
+        return known != null ? known : classifyByKeywords(phenomenon);
+    }
+
+    /**
+     * @return Lowercase keyword of the phenomena of the category, classified as this category, null for OTHER
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * @return Known weather phenomena of the Environment Agency and their categories
+     */
+    public static Map<String, PhenomenonCategory> knownPhenomena() {
+        return PHENOMENA;
+    }
+
+    /**
+     * Classifies a weather phenomenon by the first keyword found in it.
+     *
+     * @param phenomenon Weather phenomenon (case-insensitive)
+     * @return Category of the phenomenon, OTHER if none of the keywords is found
+     */
+    private static PhenomenonCategory classifyByKeywords(String phenomenon) {
+        String lowercase = phenomenon.toLowerCase();
+        for (PhenomenonCategory category : VALUES) {
+            if (category.keyword != null && lowercase.contains(category.keyword)) return category;
+        }
+        return OTHER;
+    }
+}
@@ -4,7 +4,7 @@ import lombok.*;
 
 import org.springframework.data.annotation.Id;
 
-import java.time.LocalDateTime;
+import java.time.Instant;
 
 @NoArgsConstructor
 @Data
@@ -16,7 +16,32 @@ public class WeatherData implements Comparable<WeatherData> {
     private double air_temp; // Air temperature
     private double wind_speed; // Wind speed
     private String weather_phenomenon; //  Weather phenomenon
-    private LocalDateTime timestamp; // Timestamp of the observations
+    private PhenomenonCategory phenomenon_category = PhenomenonCategory.OTHER; // Category of the weather phenomenon
+    private Instant timestamp; // Observation time of the weather data
+    private Double latitude; // Latitude of the station (WGS84), null if unknown
+    private Double longitude; // Longitude of the station (WGS84), null if unknown
+
+    /**
+     * Sets the weather phenomenon and classifies it, so the category is computed once when the weather data is
+     * imported and not for every delivery fee calculation.
+     *
+     * @param weather_phenomenon Weather phenomenon of the feed
+     */
+    public void setWeather_phenomenon(String weather_phenomenon) {
+        this.weather_phenomenon = weather_phenomenon;
+        this.phenomenon_category = PhenomenonCategory.classify(weather_phenomenon);
+    }
+
+    /**
+     * Sets the weather phenomenon with its category that is already known, without classifying it again.
+     *
+     * @param weather_phenomenon  Weather phenomenon of the feed
+     * @param phenomenon_category Category of the weather phenomenon
+     */
+    public void setWeather_phenomenon(String weather_phenomenon, PhenomenonCategory phenomenon_category) {
+        this.weather_phenomenon = weather_phenomenon;
+        this.phenomenon_category = phenomenon_category;
+    }
 
 
     // Calculations must base on the latest weather data for a specific city, so I will sort the list of station's weather data in order from the oldest to the latest
@@ -0,0 +1,9 @@
+package com.example.fooddelivery.deliveryfeecalculator.repository;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CityRepository extends CrudRepository<City, Long> {
+}
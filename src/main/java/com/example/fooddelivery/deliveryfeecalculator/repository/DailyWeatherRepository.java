@@ -0,0 +1,14 @@
+package com.example.fooddelivery.deliveryfeecalculator.repository;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.DailyWeather;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface DailyWeatherRepository extends CrudRepository<DailyWeather, Long> {
+
+    Optional<DailyWeather> findByNameAndDate(String name, LocalDate date);
+}
@@ -0,0 +1,9 @@
+package com.example.fooddelivery.deliveryfeecalculator.repository;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRule;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FeeRuleRepository extends CrudRepository<FeeRule, Long> {
+}
@@ -0,0 +1,96 @@
+package com.example.fooddelivery.deliveryfeecalculator.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+
+/**
+ * Leases of the scheduled tasks in the SCHEDULER_LOCK table, shared by all instances of the application.
+ * <p>
+ * A lease is acquired with a single conditional update, so of the instances trying at the same time exactly one
+ * succeeds. Rows of the tasks are created on first use.
+ */
+@Repository
+public class SchedulerLockRepository {
+    private static final String ACQUIRE = "update SCHEDULER_LOCK set lock_until = ?, locked_at = ?, locked_by = ? where name = ? and lock_until <= ?";
+    private static final String INSERT = "insert into SCHEDULER_LOCK(name, lock_until, locked_at, locked_by) values (?, ?, ?, ?)";
+    private static final String RELEASE = "update SCHEDULER_LOCK set lock_until = ? where name = ? and locked_by = ? and locked_at = ?";
+    private static final String INCREMENT_VERSION = "update SCHEDULER_LOCK set version = version + 1 where name = ?";
+    private static final String SELECT_VERSION = "select version from SCHEDULER_LOCK where name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public SchedulerLockRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Acquires the lease of the task, if no other instance holds it.
+     *
+     * @param name      Name of the task
+     * @param owner     Identifier of the instance
+     * @param now       Time of the acquisition, identifies the lease together with the owner
+     * @param lockUntil Time when the lease expires, if it is not released before
+     * @return true if the lease was acquired
+     */
+    public boolean tryLock(String name, String owner, Instant now, Instant lockUntil) {
+        if (jdbcTemplate.update(ACQUIRE, utc(lockUntil), utc(now), owner, name, utc(now)) == 1) return true;
+        try {
+            return jdbcTemplate.update(INSERT, name, utc(lockUntil), utc(now), owner) == 1;
+        } catch (DuplicateKeyException e) { // The task exists and its lease is held by another instance
+            return false;
+        }
+    }
+
+    /**
+     * Releases the lease of the task, unless it has expired and was acquired by another instance in the meantime.
+     *
+     * @param name      Name of the task
+     * @param owner     Identifier of the instance
+     * @param lockedAt  Time of the acquisition
+     * @param lockUntil Time until the task can not be run again, the time of the release or later
+     */
+    public void unlock(String name, String owner, Instant lockedAt, Instant lockUntil) {
+        jdbcTemplate.update(RELEASE, utc(lockUntil), name, owner, utc(lockedAt));
+    }
+
+    /**
+     * Increments the version of the results of the task, after a run has completed.
+     *
+     * @param name Name of the task
+     * @return New version
+     */
+    @Transactional
+    public long incrementVersion(String name) {
+        if (jdbcTemplate.update(INCREMENT_VERSION, name) == 0) {
+            try {
+                jdbcTemplate.update(INSERT, name, utc(Instant.EPOCH), utc(Instant.EPOCH), "");
+            } catch (DuplicateKeyException e) { // Created by another instance in the meantime
+            }
+            jdbcTemplate.update(INCREMENT_VERSION, name);
+        }
+        return getVersion(name);
+    }
+
+    /**
+     * @param name Name of the task
+     * @return Version of the results of the task, 0 if the task has never completed
+     */
+    public long getVersion(String name) {
+        List<Long> versions = jdbcTemplate.queryForList(SELECT_VERSION, Long.class, name);
+        return versions.isEmpty() ? 0 : versions.get(0);
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.fooddelivery.deliveryfeecalculator.repository;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Bulk operations of the weather data repository.
+ */
+public interface WeatherDataBatchRepository {
+
+    /**
+     * Inserts or updates all the weather data with a single batched merge in one transaction.
+     * <p>
+     * Weather data of a station is identified by the station name and the observation time, so importing the same
+     * observations again updates the existing rows instead of creating duplicates.
+     *
+     * @param weatherDataList Weather data to insert or update
+     */
+    void upsertAll(List<WeatherData> weatherDataList);
+
+    /**
+     * Deletes a limited number of weather data rows that were observed before the given time.
+     * Every call is a separate short transaction, so deleting a large amount of old weather data in several calls
+     * never locks the table for long.
+     *
+     * @param timestamp Weather data observed before this time is deleted
+     * @param limit     Maximum number of rows to delete
+     * @return Number of deleted rows
+     */
+    int deleteObservedBefore(Instant timestamp, int limit);
+}
@@ -0,0 +1,66 @@
+package com.example.fooddelivery.deliveryfeecalculator.repository;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+public class WeatherDataBatchRepositoryImpl implements WeatherDataBatchRepository {
+    private static final String UPSERT = "merge into WEATHER_DATA t " +
+            "using (values (cast(? as varchar(50)), cast(? as varchar(5)), cast(? as double), cast(? as double), cast(? as varchar(255)), " +
+            "cast(? as varchar(20)), cast(? as timestamp with time zone), cast(? as double), cast(? as double))) " +
+            "s(name, WMO, air_temp, wind_speed, weather_phenomenon, phenomenon_category, timestamp, latitude, longitude) " +
+            "on t.name = s.name and t.timestamp = s.timestamp " +
+            "when matched then update set WMO = s.WMO, air_temp = s.air_temp, wind_speed = s.wind_speed, " +
+            "weather_phenomenon = s.weather_phenomenon, phenomenon_category = s.phenomenon_category, " +
+            "latitude = s.latitude, longitude = s.longitude " +
+            "when not matched then insert (name, WMO, air_temp, wind_speed, weather_phenomenon, phenomenon_category, timestamp, latitude, longitude) " +
+            "values (s.name, s.WMO, s.air_temp, s.wind_speed, s.weather_phenomenon, s.phenomenon_category, s.timestamp, s.latitude, s.longitude)";
+    private static final String DELETE_OBSERVED_BEFORE = "delete from WEATHER_DATA where id in (select id from WEATHER_DATA where timestamp < ? limit ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public WeatherDataBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void upsertAll(List<WeatherData> weatherDataList) {
+        if (weatherDataList.isEmpty()) return;
+        jdbcTemplate.execute(UPSERT, (PreparedStatement statement) -> {
+            for (WeatherData weatherData : weatherDataList) {
+                statement.setString(1, weatherData.getName());
+                statement.setString(2, weatherData.getWMO());
+                statement.setDouble(3, weatherData.getAir_temp());
+                statement.setDouble(4, weatherData.getWind_speed());
+                statement.setString(5, weatherData.getWeather_phenomenon());
+                statement.setString(6, weatherData.getPhenomenon_category().name());
+                statement.setObject(7, toOffsetDateTime(weatherData.getTimestamp()));
+                statement.setObject(8, weatherData.getLatitude(), Types.DOUBLE);
+                statement.setObject(9, weatherData.getLongitude(), Types.DOUBLE);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return null;
+        });
+    }
+
+    @Override
+    @Transactional
+    public int deleteObservedBefore(Instant timestamp, int limit) {
+        return jdbcTemplate.update(DELETE_OBSERVED_BEFORE, toOffsetDateTime(timestamp), limit);
+    }
+
+    private static OffsetDateTime toOffsetDateTime(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -1,9 +1,73 @@
 package com.example.fooddelivery.deliveryfeecalculator.repository;
 
 import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface WeatherDataRepository extends CrudRepository<WeatherData, Long> {
+public interface WeatherDataRepository extends CrudRepository<WeatherData, Long>, WeatherDataBatchRepository {
+
+    /**
+     * Finds the latest weather data of a specific station.
+     * <p>
+     * The query is backed by the composite (name, timestamp) index, so only the newest row of the station is read
+     * no matter how much history is stored in the database.
+     *
+     * @param name Name of the station
+     * @return Latest weather data of the station or empty Optional if station has no weather data
+     */
+    @Query("select * from WEATHER_DATA where name = :name order by timestamp desc limit 1")
+    Optional<WeatherData> findLatestByName(@Param("name") String name);
+
+    /**
+     * Finds the latest weather data of a specific station that was observed at or before the given time.
+     *
+     * @param name      Name of the station
+     * @param timestamp Time of interest
+     * @return Weather data of the station at the given time or empty Optional if station has no older weather data
+     */
+    @Query("select * from WEATHER_DATA where name = :name and timestamp <= :timestamp order by timestamp desc limit 1")
+    Optional<WeatherData> findLatestByNameAt(@Param("name") String name, @Param("timestamp") Instant timestamp);
+
+    /**
+     * Finds weather data of every station that was observed at or after the given time.
+     *
+     * @param timestamp Start of the period
+     * @return Weather data observed since the given time
+     */
+    @Query("select * from WEATHER_DATA where timestamp >= :timestamp")
+    List<WeatherData> findAllSince(@Param("timestamp") Instant timestamp);
+
+    /**
+     * Finds weather data of a specific station that was observed in the given period.
+     *
+     * @param name Name of the station
+     * @param from Start of the period (inclusive)
+     * @param to   End of the period (exclusive)
+     * @return Weather data of the station observed in the given period, oldest first
+     */
+    @Query("select * from WEATHER_DATA where name = :name and timestamp >= :from and timestamp < :to order by timestamp")
+    List<WeatherData> findByNameBetween(@Param("name") String name, @Param("from") Instant from, @Param("to") Instant to);
+
+    /**
+     * Finds weather data of every station that was observed in the given period.
+     *
+     * @param from Start of the period (inclusive)
+     * @param to   End of the period (exclusive)
+     * @return Weather data observed in the given period
+     */
+    @Query("select * from WEATHER_DATA where timestamp >= :from and timestamp < :to")
+    List<WeatherData> findAllBetween(@Param("from") Instant from, @Param("to") Instant to);
+
+    /**
+     * @return Weather data with the oldest timestamp or empty Optional if there is no weather data
+     */
+    @Query("select * from WEATHER_DATA order by timestamp limit 1")
+    Optional<WeatherData> findOldest();
 }
@@ -0,0 +1,47 @@
+package com.example.fooddelivery.deliveryfeecalculator.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * Latest imported forecast feed in the WEATHER_FORECAST table, shared by all instances of the application.
+ * <p>
+ * The feed is stored as it was fetched, in a single row that is replaced by every import.
+ */
+@Repository
+public class WeatherForecastRepository {
+    private static final String SAVE = "merge into WEATHER_FORECAST(id, imported_at, feed) key(id) values (1, ?, ?)";
+    private static final String SELECT_FEED = "select feed from WEATHER_FORECAST where id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public WeatherForecastRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Replaces the stored forecast feed.
+     *
+     * @param feed       Forecast feed
+     * @param importedAt Time of the import
+     */
+    public void save(byte[] feed, Instant importedAt) {
+        jdbcTemplate.update(SAVE, importedAt.atOffset(ZoneOffset.UTC), feed);
+    }
+
+    /**
+     * @return Latest imported forecast feed, empty if no forecast has been imported
+     */
+    public Optional<byte[]> findFeed() {
+        List<byte[]> feeds = jdbcTemplate.queryForList(SELECT_FEED, byte[].class);
+        return feeds.stream().findFirst();
+    }
+}
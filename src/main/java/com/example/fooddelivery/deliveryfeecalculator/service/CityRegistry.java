@@ -0,0 +1,82 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.repository.CityRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+
+/**
+ * Registry of the cities where deliveries are made, their weather stations and regional base fees.
+ * <p>
+ * Cities are stored in the CITY table and loaded into an immutable map, which is replaced as a whole
+ * when the cities are reloaded. Cities can be added or changed in the database without restarting the application.
+ */
+@Component
+public class CityRegistry {
+    private final CityRepository cityRepository;
+    private volatile Map<String, City> cities = Map.of(); // Cities by name and lowercase name
+    private volatile List<City> cityList = List.of(); // Cities sorted by name
+
+    @Autowired
+    public CityRegistry(CityRepository cityRepository) {
+        this.cityRepository = cityRepository;
+    }
+
+    @PostConstruct
+    public void loadCities() {
+        reload();
+    }
+
+    /**
+     * Loads the cities from the database.
+     *
+     * @return true if cities were changed since the previous load, false otherwise
+     */
+    public synchronized boolean reload() {
+        List<City> loaded = new ArrayList<>();
+        cityRepository.findAll().forEach(loaded::add);
+        loaded.sort(Comparator.comparing(City::getName));
+        if (loaded.equals(cityList)) return false;
+
+        Map<String, City> byName = new HashMap<>();
+        for (City city : loaded) {
+            byName.put(city.getName().toLowerCase(), city);
+            byName.put(city.getName(), city);
+        }
+        cities = Map.copyOf(byName);
+        cityList = List.copyOf(loaded);
+        return true;
+    }
+
+    /**
+     * Finds the city by its name. City names are case-insensitive.
+     *
+     * @param name Name of the city
+     * @return The city or empty Optional if there is no such city
+     */
+    public Optional<City> find(String name) {
+        City city = cities.get(name);
+        if (city == null) city = cities.get(name.toLowerCase());
+        return Optional.ofNullable(city);
+    }
+
+    /**
+     * @return Immutable list of all the cities
+     */
+    public List<City> getCities() {
+        return cityList;
+    }
+
+    /**
+     * @return Names of the stations whose weather data is used for the cities
+     */
+    public Set<String> getStations() {
+        Set<String> stations = new HashSet<>();
+        for (City city : cityList) stations.add(city.getStation());
+        return stations;
+    }
+}
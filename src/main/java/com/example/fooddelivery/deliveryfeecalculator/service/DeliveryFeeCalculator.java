@@ -1,50 +1,77 @@
 package com.example.fooddelivery.deliveryfeecalculator.service;
 
-import com.example.fooddelivery.deliveryfeecalculator.exception.ApiRequestException;
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeBreakdown;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
 import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
-import lombok.Data;
-import lombok.NoArgsConstructor;
 import org.springframework.stereotype.Component;
 
 
-@Data
+/**
+ * Delivery fee calculator.
+ * <p>
+ * Every input is given as a parameter and the result is returned as an immutable FeeResult object, which contains either
+ * the breakdown of the delivery fee or the reason why the delivery fee can not be given. Rejections are results, not
+ * exceptions, so a rejected request is as cheap as an accepted one. The only state
+ * is the compiled set of extra fee rules, which is replaced as a whole when the rules are reloaded, so a single
+ * instance can be safely shared between concurrent requests and a calculation never sees a mix of old and new rules.
+ */
 @Component
-@NoArgsConstructor
 public class DeliveryFeeCalculator {
+    private volatile FeeRules feeRules;
 
-    private String city; // City for which to calculate the delivery fee.
-    private String vehicle; // Vehicle for which to calculate the delivery fee.
-    private double RBF; // Regional base fee
-    private double ATEF; // Air temperature extra fee
-    private double WSEF; // Wind speed extra fee
-    private double WPEF; // Weather phenomenon extra fee
-    private WeatherData weatherData; // Weather data about this city
+    /**
+     * Creates a calculator with the rules of the task description, until the rules are loaded from the database.
+     */
+    public DeliveryFeeCalculator() {
+        this(FeeRules.DEFAULT);
+    }
+
+    public DeliveryFeeCalculator(FeeRules feeRules) {
+        this.feeRules = feeRules;
+    }
 
     /**
-     * Calculates the delivery fee based on the values set for the deliveryFeeCalculator object.
-     * <p>
-     * This method calculates the delivery fee based on the values set for the deliveryFeeCalculator object,
-     * including the city, vehicle, and weather data.
-     * It first checks if the vehicle type is valid, and if not, throws an ApiRequestException.
-     * Otherwise, it calculates the regional base fee (RBF) for the given city and vehicle type, and if the vehicle type is a
-     * bike or a scooter, calculates additional fees such as the air temperature extra fee (ATEF),
-     * the wind speed extra fee (WPEF), and the weather phenomenon extra fee (WSEF).
-     * Finally, it returns the sum of all the calculated fees.
+     * @return Extra fee rules currently in use
+     */
+    public FeeRules getFeeRules() {
+        return feeRules;
+    }
+
+    /**
+     * Replaces the extra fee rules. Calculations in progress finish with the previous rules.
      *
-     * @return The calculated delivery fee based on the values set for the deliveryFeeCalculator object.
-     * @throws ApiRequestException If vehicle type is incorrect or any business rules violated.
+     * @param feeRules Compiled extra fee rules
      */
-    public double calculateFee() throws ApiRequestException {
-        if (!checkVehicle(vehicle)) throw new ApiRequestException("Invalid vehicle type!");
-        else calculateRBF(this.city, this.vehicle);
+    public void setFeeRules(FeeRules feeRules) {
+        this.feeRules = feeRules;
+    }
 
-        if (vehicle.equals("scooter") || vehicle.equals("bike")) {
-            this.ATEF = calculateATEF();
-            this.WPEF = calculateWPEF();
-            if (vehicle.equals("bike")) this.WSEF = calculateWSEF();
-        }
+    /**
+     * Calculates the delivery fee for the given city, vehicle and weather data.
+     * <p>
+     * It first checks if the vehicle type is valid, and if not, returns the INVALID_VEHICLE result.
+     * Otherwise, it calculates the regional base fee (RBF) for the given city and vehicle type, and the extra fees
+     * of the vehicle type according to the extra fee rules: the air temperature extra fee (ATEF),
+     * the wind speed extra fee (WSEF), and the weather phenomenon extra fee (WPEF).
+     * If the usage of the vehicle is forbidden by any of the extra fee rules, the FORBIDDEN result is returned.
+     *
+     * @param city        City of the delivery
+     * @param vehicle     Vehicle of the delivery (lowercase)
+     * @param weatherData Weather data about the city
+     * @return Breakdown of the calculated delivery fee or the reason why the delivery fee can not be given
+     */
+    public FeeResult calculateFee(City city, String vehicle, WeatherData weatherData) {
+        if (!checkVehicle(vehicle)) return FeeResult.INVALID_VEHICLE;
+        FeeRules rules = feeRules;
+        double RBF = calculateRBF(city, vehicle);
+        double ATEF = rules.airTemperatureFee(vehicle, weatherData.getAir_temp());
+        double WPEF = rules.phenomenonFee(vehicle, weatherData.getPhenomenon_category());
+        double WSEF = rules.windSpeedFee(vehicle, weatherData.getWind_speed());
+        // NaN propagates through addition, so the sum is NaN if any extra fee is forbidden
+        if (Double.isNaN(ATEF + WPEF + WSEF)) return FeeResult.FORBIDDEN;
 
-        return RBF + ATEF + WSEF + WPEF;
+        return FeeResult.success(new FeeBreakdown(city.getName(), vehicle, RBF, ATEF, WSEF, WPEF));
     }
 
     /**
@@ -60,93 +87,50 @@ public class DeliveryFeeCalculator {
     }
 
     /**
-     * Calculates the regional base fee (RBF) for the given city and vehicle combination
-     * according to the business rules introduced in the task description.
+     * Calculates the regional base fee (RBF) for the given city and vehicle combination.
+     * Regional base fees of every city are configured in the city registry.
      *
-     * @param city    City the name of the city where the delivery is being made
+     * @param city    City where the delivery is being made
      * @param vehicle The type of vehicle that will be used for the delivery
+     * @return Regional base fee(RBF) or 0 if vehicle is unknown
      */
-    public void calculateRBF(String city, String vehicle) {
-        switch (city) {
-            case "tallinn":
-                switch (vehicle) {
-                    case "car":
-                        RBF = 4;
-                        break;
-                    case "scooter":
-                        RBF = 3.5;
-                        break;
-                    case "bike":
-                        RBF = 3;
-                        break;
-                }
-                break;
-            case "tartu":
-                switch (vehicle) {
-                    case "car":
-                        RBF = 3.5;
-                        break;
-                    case "scooter":
-                        RBF = 3;
-                        break;
-                    case "bike":
-                        RBF = 2.5;
-                        break;
-                }
-                break;
-            case "pärnu":
-                switch (vehicle) {
-                    case "car":
-                        RBF = 3;
-                        break;
-                    case "scooter":
-                        RBF = 2.5;
-                        break;
-                    case "bike":
-                        RBF = 2;
-                        break;
-                }
-                break;
-        }
+    public double calculateRBF(City city, String vehicle) {
+        return city.getBaseFee(vehicle);
     }
 
     /**
-     * Calculates air temperature extra fee(ATEF) based on air temperature according to the business rules introduced in the task description.
+     * Calculates air temperature extra fee(ATEF) based on air temperature according to the extra fee rules of the vehicle.
      *
-     * @return Air temperature extra fee(ATEF)
+     * @param vehicle     Vehicle of the delivery (lowercase)
+     * @param weatherData Weather data about the city
+     * @return Air temperature extra fee(ATEF) or FeeRules.FORBIDDEN if usage of the vehicle is forbidden at the air temperature
      */
-    public double calculateATEF() {
-        double temp = weatherData.getAir_temp();
-        if (temp < -10) return 1;
-        else if (temp <= 0) return 0.5;
-        return 0;
+    public double calculateATEF(String vehicle, WeatherData weatherData) {
+        return feeRules.airTemperatureFee(vehicle, weatherData.getAir_temp());
     }
 
     /**
-     * Calculates wind speed extra fee(WSEF) based on wind speed according to the business rules introduced in the task description.
+     * Calculates wind speed extra fee(WSEF) based on wind speed according to the extra fee rules of the vehicle.
      *
-     * @return Wind speed extra fee(WSEF)
-     * @throws ApiRequestException If wind speed is larger than 20
+     * @param vehicle     Vehicle of the delivery (lowercase)
+     * @param weatherData Weather data about the city
+     * @return Wind speed extra fee(WSEF) or FeeRules.FORBIDDEN if usage of the vehicle is forbidden at the wind speed
+     * (by default larger than 20 for bikes)
      */
-    public double calculateWSEF() throws ApiRequestException {
-        double wind_speed = weatherData.getWind_speed();
-        if (wind_speed > 20) throw new ApiRequestException("Usage of selected vehicle type is forbidden");
-        else if (wind_speed <= 20 && wind_speed >= 10) return 0.5;
-        return 0;
+    public double calculateWSEF(String vehicle, WeatherData weatherData) {
+        return feeRules.windSpeedFee(vehicle, weatherData.getWind_speed());
     }
 
     /**
-     * Calculates weather phenomenon extra fee(WPEF) based on weather phenomenon according to the business rules introduced in the task description.
+     * Calculates weather phenomenon extra fee(WPEF) based on the category of the weather phenomenon, classified when the
+     * weather data was imported, according to the extra fee rules of the vehicle.
      *
-     * @return Weather phenomenon extra fee(WPEF)
-     * @throws ApiRequestException If weather phenomenon is glaze, hail, or thunder.
+     * @param vehicle     Vehicle of the delivery (lowercase)
+     * @param weatherData Weather data about the city
+     * @return Weather phenomenon extra fee(WPEF) or FeeRules.FORBIDDEN if usage of the vehicle is forbidden in the weather
+     * phenomenon (by default glaze, hail, or thunder).
      */
-    public double calculateWPEF() throws ApiRequestException {
-        String phenomenon = weatherData.getWeather_phenomenon().toLowerCase();
-        if (phenomenon.contains("snow") || phenomenon.contains("sleet")) return 1;
-        else if (phenomenon.contains("rain")) return 0.5;
-        else if (phenomenon.contains("glaze") || phenomenon.contains("hail") || phenomenon.contains("thunder"))
-            throw new ApiRequestException("Usage of selected vehicle type is forbidden");
-        return 0;
+    public double calculateWPEF(String vehicle, WeatherData weatherData) {
+        return feeRules.phenomenonFee(vehicle, weatherData.getPhenomenon_category());
     }
 }
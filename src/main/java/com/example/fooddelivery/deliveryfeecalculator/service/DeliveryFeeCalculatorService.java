@@ -1,96 +1,278 @@
 package com.example.fooddelivery.deliveryfeecalculator.service;
 
 import com.example.fooddelivery.deliveryfeecalculator.exception.ApiRequestException;
+import com.example.fooddelivery.deliveryfeecalculator.exception.WeatherFetchException;
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRequest;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResponse;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeSnapshot;
 import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
 import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.StringReader;
-import java.time.LocalDateTime;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+@Slf4j
 @Service
 public class DeliveryFeeCalculatorService {
     private final WeatherDataRepository weatherDataRepository;
-    private RestTemplate restTemplate;
+    private final LatestWeatherCache latestWeatherCache;
+    private final CityRegistry cityRegistry;
+    private final WeatherTimeline weatherTimeline;
+    private final WeatherFeedClient weatherFeedClient;
+    private ObservationsParser observationsParser;
     private DeliveryFeeCalculator deliveryFeeCalculator;
+    private final DeliveryFeeMetrics deliveryFeeMetrics;
+    private final FeeRuleRegistry feeRuleRegistry;
+    private final FeeStreamBroadcaster feeStreamBroadcaster;
+    private final ForecastFeeService forecastFeeService;
+    private volatile FeeTable feeTable; // Delivery fees calculated from the latest weather data
+    private volatile StationIndex stationIndex; // Latest weather data of the stations with coordinates
+    private volatile Set<String> fetchedStations = Set.of(); // Stations of the previous successful fetch
+
+    // Whether weather data of every station in the feed is imported or only the stations of the cities
+    @Value("${app.weather.import-all-stations:false}")
+    private boolean importAllStations;
+
+    // Maximum age of the latest weather data, and whether delivery fees are calculated from older weather data
+    @Value("${app.weather.max-age:PT3H}")
+    private Duration maxAge = Duration.ofHours(3);
+    @Value("${app.weather.stale-policy:serve}")
+    private StaleDataPolicy staleDataPolicy = StaleDataPolicy.SERVE;
+
+    // Number of the nearest stations the weather at the location of a delivery is interpolated from
+    @Value("${app.weather.nearest.interpolated-stations:3}")
+    private int interpolatedStations = 3;
+    // Maximum distance of the stations from the location of a delivery (km), farther locations have no weather data
+    @Value("${app.weather.nearest.max-distance-km:50}")
+    private double maxDistanceKm = 50;
 
     @Autowired
-    public DeliveryFeeCalculatorService(WeatherDataRepository weatherDataRepository, RestTemplate restTemplate, DeliveryFeeCalculator DeliveryFeeCalculator) {
+    public DeliveryFeeCalculatorService(WeatherDataRepository weatherDataRepository, LatestWeatherCache latestWeatherCache, CityRegistry cityRegistry, WeatherTimeline weatherTimeline, WeatherFeedClient weatherFeedClient, ObservationsParser observationsParser, DeliveryFeeCalculator DeliveryFeeCalculator, DeliveryFeeMetrics deliveryFeeMetrics, FeeRuleRegistry feeRuleRegistry, FeeStreamBroadcaster feeStreamBroadcaster, ForecastFeeService forecastFeeService) {
         this.weatherDataRepository = weatherDataRepository;
-        this.restTemplate = restTemplate;
+        this.latestWeatherCache = latestWeatherCache;
+        this.cityRegistry = cityRegistry;
+        this.weatherTimeline = weatherTimeline;
+        this.weatherFeedClient = weatherFeedClient;
+        this.observationsParser = observationsParser;
         this.deliveryFeeCalculator = DeliveryFeeCalculator;
+        this.deliveryFeeMetrics = deliveryFeeMetrics;
+        this.feeRuleRegistry = feeRuleRegistry;
+        this.feeStreamBroadcaster = feeStreamBroadcaster;
+        this.forecastFeeService = forecastFeeService;
+        this.feeTable = FeeTable.build(cityRegistry.getCities(), latestWeatherCache.getAll(), DeliveryFeeCalculator);
+        this.stationIndex = StationIndex.build(latestWeatherCache.getAll().values());
+        feeStreamBroadcaster.broadcast(getSnapshot()); // Subscribers get the current snapshot even before any change
+    }
+
+    /**
+     * Warms up the latest weather cache with the latest weather data of every station that is not in the cache yet.
+     * The weather data is taken from the weather timeline, the database is only queried for stations without weather
+     * data in the recent window. If weather data of every station is imported, every station of the timeline is
+     * warmed up too, so the nearest stations of a delivery are found before the first import.
+     */
+    @PostConstruct
+    public void loadLatestWeatherData() {
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        Set<String> stations = new HashSet<>(cityRegistry.getStations());
+        if (importAllStations) stations.addAll(weatherTimeline.getStations());
+        for (String station : stations) {
+            if (latestWeatherCache.get(station).isEmpty())
+                weatherTimeline.findLatest(station)
+                        .or(() -> weatherDataRepository.findLatestByName(station))
+                        .ifPresent(weatherDataList::add);
+        }
+        publishWeatherData(weatherDataList);
+    }
+
+    /**
+     * Reloads the cities from the database, so cities can be added or changed without restarting the application.
+     * If the cities have changed, the weather data of new stations is loaded and the delivery fees are recalculated,
+     * also the delivery fees of the weather forecast.
+     */
+    @Scheduled(fixedDelayString = "${app.cities.refresh-rate}", initialDelayString = "${app.cities.refresh-rate}")
+    public void reloadCities() {
+        if (!cityRegistry.reload()) return;
+        loadLatestWeatherData();
+        forecastFeeService.rebuild();
+    }
+
+    /**
+     * Reloads the extra fee rules from the database, so tariffs can be changed without a deploy.
+     * If the rules have changed, the delivery fees and the delivery fees of the weather forecast are recalculated
+     * with the new rules.
+     *
+     * @throws ApiRequestException If the rules in the database are invalid, the previous rules stay in use in that case
+     */
+    public void reloadFeeRules() throws ApiRequestException {
+        boolean changed;
+        try {
+            changed = feeRuleRegistry.reload();
+        } catch (IllegalArgumentException e) {
+            throw new ApiRequestException(e.getMessage());
+        }
+        if (!changed) return;
+        publishWeatherData(List.of());
+        forecastFeeService.rebuild();
+    }
+
+    /**
+     * Reloads the extra fee rules periodically. Invalid rules are logged and the previous rules stay in use.
+     */
+    @Scheduled(fixedDelayString = "${app.fee.rules.refresh-rate}", initialDelayString = "${app.fee.rules.refresh-rate}")
+    public void refreshFeeRules() {
+        try {
+            reloadFeeRules();
+        } catch (ApiRequestException e) {
+            log.error("Fee rules were not reloaded: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes new weather data to the latest weather cache and recalculates the delivery fees of every city
+     * and vehicle combination from the updated weather data and the current extra fee rules. The spatial index
+     * of the stations is rebuilt from the updated weather data.
+     * If the delivery fees or the weather data of the cities changed, they are pushed to the subscribers of the fee stream.
+     *
+     * @param weatherDataList Latest weather data
+     */
+    public synchronized void publishWeatherData(Collection<WeatherData> weatherDataList) {
+        latestWeatherCache.publish(weatherDataList);
+        if (!weatherDataList.isEmpty()) stationIndex = StationIndex.build(latestWeatherCache.getAll().values());
+        FeeTable previous = feeTable;
+        feeTable = FeeTable.build(cityRegistry.getCities(), latestWeatherCache.getAll(), deliveryFeeCalculator);
+        deliveryFeeMetrics.updateCities(cityRegistry.getCities());
+        deliveryFeeMetrics.updateStations(cityRegistry.getStations());
+        if (!feeTable.getVersion().equals(previous.getVersion())) feeStreamBroadcaster.broadcast(getSnapshot());
+    }
+
+    /**
+     * @return Delivery fees of every city and vehicle combination and the latest weather data of the stations of the cities
+     */
+    public FeeSnapshot getSnapshot() {
+        FeeTable table = feeTable;
+        Map<String, WeatherData> stations = new TreeMap<>();
+        for (String station : cityRegistry.getStations())
+            latestWeatherCache.get(station).ifPresent(weatherData -> stations.put(station, weatherData));
+        return new FeeSnapshot(table.getVersion(), table.toMap(), stations);
+    }
+
+    /**
+     * Version of the published weather data and the delivery fees calculated from it. The version changes whenever
+     * a response of the latest delivery fee or latest weather data may change, so it can be used as an ETag.
+     * <p>
+     * The version must be read before the response is created: the weather data is published before the version
+     * changes, so a response is never older than the version it is tagged with.
+     *
+     * @return Version of the delivery fee table calculated from the latest weather data
+     */
+    public String getSnapshotVersion() {
+        return feeTable.getVersion();
     }
 
     /**
      * This method fetches the latest weather data from the weather portal of the Estonian Environment Agency.
-     * Only uses weather data of the following stations: Tallinn-Harku, Tartu-Tõravere, Pärnu.
-     * Creates WeatherData objects with fetched data and saves them into a list.
+     * Only uses weather data of the stations of the cities in the city registry, unless importing of all stations
+     * is enabled in application.properties file.
+     * <p>
+     * Waits for the asynchronous fetch, which is bounded by the timeouts and retries of the weather feed client.
      *
-     * @return List containing weather data(WeatherData objects) af Tallinn-Harku, Tartu-Tõravere and Pärnu stations.
+     * @return List containing weather data(WeatherData objects) of the stations of the cities in the city registry.
+     * Empty list if the weather data has not changed since the previous fetch.
+     * @throws WeatherFetchException If the weather data could not be fetched or parsed.
      */
     public List<WeatherData> fetchLatestWeatherData() {
-        String url = "https://www.ilmateenistus.ee/ilma_andmed/xml/observations.php";
-        String response = restTemplate.getForObject(url, String.class);
-
-        List<WeatherData> weatherDataList = new ArrayList<>();
         try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            InputSource inputSource = new InputSource(new StringReader(response));
-            Document doc = dBuilder.parse(inputSource);
-            doc.getDocumentElement().normalize();
-            NodeList nList = doc.getElementsByTagName("station");
-            for (int i = 0; i < nList.getLength(); i++) {
-                Node nNode = nList.item(i);
-                if (nNode.getNodeType() == Node.ELEMENT_NODE) {
-                    Element eElement = (Element) nNode;
-                    WeatherData weatherData = new WeatherData();
-                    String name = eElement.getElementsByTagName("name").item(0).getTextContent();
-                    if (name.equals("Tartu-Tõravere") || name.equals("Pärnu") || name.equals("Tallinn-Harku")) {
-                        weatherData.setName(name);
-                        weatherData.setWMO(eElement.getElementsByTagName("wmocode").item(0).getTextContent());
-                        weatherData.setAir_temp(Double.parseDouble(eElement.getElementsByTagName("airtemperature").item(0).getTextContent()));
-                        weatherData.setWind_speed(Double.parseDouble(eElement.getElementsByTagName("windspeed").item(0).getTextContent()));
-                        weatherData.setWeather_phenomenon(eElement.getElementsByTagName("phenomenon").item(0).getTextContent());
-                        weatherData.setTimestamp(LocalDateTime.now());
-                        weatherDataList.add(weatherData);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+            return fetchLatestWeatherDataAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof WeatherFetchException fetchException) throw fetchException;
+            throw e;
         }
-        return weatherDataList;
     }
 
     /**
-     * Saves freshly fetched weather data into the database.
+     * Fetches the latest weather data asynchronously with the non-blocking weather feed client.
+     * <p>
+     * If the feed has not changed since the previous fetch, it is not downloaded again. If other stations are needed
+     * than in the previous fetch (e.g. a city was added), the whole feed is downloaded.
+     * If the weather data cannot be fetched or parsed, the error is logged and the future completes exceptionally with
+     * a WeatherFetchException, so the previous weather data stays in use. Fetches are counted in the weather.import.fetch
+     * metric by outcome.
+     *
+     * @return Future of the weather data of the stations of the cities in the city registry, empty list if the weather
+     * data has not changed since the previous fetch.
      */
-    public void saveWeatherData() {
+    public CompletableFuture<List<WeatherData>> fetchLatestWeatherDataAsync() {
+        Set<String> stations = cityRegistry.getStations();
+        if (!importAllStations && !stations.equals(fetchedStations)) weatherFeedClient.invalidate();
+        long start = System.nanoTime();
+
+        return weatherFeedClient.fetch().handle((body, e) -> {
+            if (e != null) {
+                deliveryFeeMetrics.recordFetch("failure", System.nanoTime() - start);
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Unable to fetch weather data", cause);
+                throw new WeatherFetchException("Unable to fetch weather data", cause);
+            }
+            if (body.isEmpty()) {
+                deliveryFeeMetrics.recordFetch("not_modified", System.nanoTime() - start);
+                log.info("Weather data has not changed since the previous fetch");
+                return new ArrayList<>();
+            }
+            long parseStart = System.nanoTime();
+            try {
+                List<WeatherData> weatherDataList = importAllStations
+                        ? observationsParser.parseAll(new ByteArrayInputStream(body.get()))
+                        : observationsParser.parse(new ByteArrayInputStream(body.get()), stations);
+                fetchedStations = stations;
+                deliveryFeeMetrics.recordFetch("success", System.nanoTime() - start);
+                return weatherDataList;
+            } catch (XMLStreamException | RuntimeException parseException) {
+                // The validators of the response are already stored, the feed must be downloaded again next time
+                weatherFeedClient.invalidate();
+                deliveryFeeMetrics.recordFetch("failure", System.nanoTime() - start);
+                log.error("Unable to parse weather data", parseException);
+                throw new WeatherFetchException("Unable to parse weather data", parseException);
+            } finally {
+                deliveryFeeMetrics.recordParse(System.nanoTime() - parseStart);
+            }
+        });
+    }
+
+    /**
+     * Saves freshly fetched weather data into the database and publishes it to the latest weather cache
+     * and the delivery fee table.
+     * <p>
+     * All the weather data is upserted with a single batched merge in one transaction, so the import time stays flat
+     * as the number of imported stations grows. Importing the same observations again does not create duplicates.
+     *
+     * @return Number of stations whose weather data was imported, 0 if the weather data has not changed
+     * @throws WeatherFetchException If the weather data could not be fetched or parsed, nothing is imported then
+     */
+    public int saveWeatherData() {
         List<WeatherData> weatherDataList = this.fetchLatestWeatherData();
-        for (WeatherData weatherData : weatherDataList) {
-            weatherDataRepository.save(weatherData);
-        }
+        weatherDataRepository.upsertAll(weatherDataList);
+        weatherTimeline.add(weatherDataList);
+        publishWeatherData(weatherDataList);
+        log.info("Imported weather data of {} stations", weatherDataList.size());
+        return weatherDataList.size();
     }
 
     /**
      * Calculates the delivery fee for a specific vehicle type in a given city based on the latest weather data available.
-     * <p>
-     * The city name is first converted to lowercase and passed to
-     * the findLatest() method to retrieve the latest weather data for the city. The delivery fee calculator object is then
-     * initialized with the appropriate values and the weather data, and the calculateFee() method is called to calculate
-     * the delivery fee. The calculated fee is then returned.
+     * Same as quote(city, vehicle), for callers that only need the total delivery fee.
      *
      * @param city    The name of the city for which to calculate the delivery fee.
      * @param vehicle The type of vehicle for which to calculate the delivery fee.
@@ -98,59 +280,207 @@ public class DeliveryFeeCalculatorService {
      * @throws ApiRequestException If any of the input parameters are incorrect or any business rules violated.
      */
     public double calculateFee(String city, String vehicle) throws ApiRequestException {
-        WeatherData weatherData = findLatest(city.toLowerCase());
-        deliveryFeeCalculator.setATEF(0);
-        deliveryFeeCalculator.setRBF(0);
-        deliveryFeeCalculator.setWPEF(0);
-        deliveryFeeCalculator.setWSEF(0);
-        deliveryFeeCalculator.setCity(city.toLowerCase());
-        deliveryFeeCalculator.setVehicle(vehicle.toLowerCase());
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        return deliveryFeeCalculator.calculateFee();
+        return total(quote(city, vehicle));
+    }
+
+    /**
+     * Looks up the delivery fee for a specific vehicle type in a given city based on the latest weather data available.
+     * <p>
+     * Delivery fees of every city and vehicle combination, including the rejections, are calculated once after every
+     * weather data import, so this method only looks up the precomputed result from the fee table and rejected requests
+     * are as cheap as accepted ones. No shared state is modified, so concurrent requests can be calculated in parallel.
+     * If the stale data policy is REJECT, the request is rejected when the weather data of the city's station is older
+     * than the maximum age of weather data.
+     *
+     * @param city    The name of the city for which to calculate the delivery fee.
+     * @param vehicle The type of vehicle for which to calculate the delivery fee.
+     * @return Breakdown of the delivery fee or the reason why the delivery fee can not be given
+     */
+    public FeeResult quote(String city, String vehicle) {
+        long start = System.nanoTime();
+        FeeResult result = feeTable.lookup(city, vehicle, staleBefore());
+        deliveryFeeMetrics.recordFee(city, vehicle, result, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Calculates the delivery fee for a specific vehicle type in a given city based on the weather data at the given time.
+     * Same as quote(city, vehicle, timestamp), for callers that only need the total delivery fee.
+     *
+     * @param city      The name of the city for which to calculate the delivery fee.
+     * @param vehicle   The type of vehicle for which to calculate the delivery fee.
+     * @param timestamp Time of the delivery
+     * @return The calculated delivery fee for the specified vehicle type in the specified city at the given time.
+     * @throws ApiRequestException If any of the input parameters are incorrect or any business rules violated.
+     */
+    public double calculateFee(String city, String vehicle, Instant timestamp) throws ApiRequestException {
+        return total(quote(city, vehicle, timestamp));
+    }
+
+    /**
+     * Calculates the delivery fee for a specific vehicle type in a given city based on the weather data at the given time.
+     * <p>
+     * Weather data at the given time is the latest weather data of the city's station observed at or before the given time.
+     * It is looked up from the in-memory weather timeline or from the database if the given time is older than
+     * the timeline.
+     *
+     * @param city      The name of the city for which to calculate the delivery fee.
+     * @param vehicle   The type of vehicle for which to calculate the delivery fee.
+     * @param timestamp Time of the delivery
+     * @return Breakdown of the delivery fee or the reason why the delivery fee can not be given
+     */
+    public FeeResult quote(String city, String vehicle, Instant timestamp) {
+        long start = System.nanoTime();
+        FeeResult result = calculateHistoricalFee(city, vehicle, timestamp, new HashMap<>());
+        deliveryFeeMetrics.recordFee(city, vehicle, result, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Calculates the delivery fee for a specific vehicle type in a given city based on the latest weather data
+     * at the location of the delivery.
+     * <p>
+     * The weather is resolved from the latest weather data of the station nearest to the location, or interpolated
+     * from the nearest stations (configurable in application.properties file), with the spatial index of the stations
+     * that is built after every weather data import. Only stations within the maximum distance (configurable in
+     * application.properties file) are used, the request is rejected if there are none. The regional base fee is the
+     * base fee of the city.
+     * If the stale data policy is REJECT, the request is rejected when the weather data is older than the maximum age.
+     *
+     * @param city        The name of the city for which to calculate the delivery fee.
+     * @param vehicle     The type of vehicle for which to calculate the delivery fee.
+     * @param latitude    Latitude of the location of the delivery (WGS84)
+     * @param longitude   Longitude of the location of the delivery (WGS84)
+     * @param interpolate Whether the weather is interpolated from the nearest stations instead of taken from the nearest one
+     * @return Breakdown of the delivery fee or the reason why the delivery fee can not be given
+     */
+    public FeeResult quote(String city, String vehicle, double latitude, double longitude, boolean interpolate) {
+        long start = System.nanoTime();
+        FeeResult result = calculateFeeAt(city, vehicle, latitude, longitude, interpolate);
+        deliveryFeeMetrics.recordFee(city, vehicle, result, System.nanoTime() - start);
+        return result;
+    }
+
+    private FeeResult calculateFeeAt(String city, String vehicle, double latitude, double longitude, boolean interpolate) {
+        Optional<City> deliveryCity = cityRegistry.find(city);
+        if (deliveryCity.isEmpty()) return FeeResult.INVALID_CITY;
+        StationIndex index = stationIndex;
+        WeatherData weatherData = interpolate
+                ? index.interpolate(latitude, longitude, interpolatedStations, maxDistanceKm)
+                : index.nearest(latitude, longitude, maxDistanceKm);
+        if (weatherData == null)
+            return FeeResult.rejected(FeeResult.Outcome.NO_WEATHER_DATA, "No weather data available near " + latitude + ", " + longitude);
+        Instant staleBefore = staleBefore();
+        if (staleBefore != null && (weatherData.getTimestamp() == null || weatherData.getTimestamp().isBefore(staleBefore)))
+            return FeeResult.rejected(FeeResult.Outcome.STALE, "Weather data of station " + weatherData.getName() + " is outdated");
+        return deliveryFeeCalculator.calculateFee(deliveryCity.get(), vehicle.toLowerCase(), weatherData);
+    }
+
+    /**
+     * @param result Result of a delivery fee request
+     * @return Total delivery fee
+     * @throws ApiRequestException If the request was rejected
+     */
+    private static double total(FeeResult result) throws ApiRequestException {
+        if (!result.isSuccess()) throw new ApiRequestException(result.getReason());
+        return result.getBreakdown().getTotal();
+    }
+
+    /**
+     * Calculates delivery fees for several city and vehicle combinations at once.
+     * <p>
+     * Requests without timestamp are served from the fee table calculated from the latest weather data.
+     * For requests with timestamp, the weather data of the city's station at that time is looked up
+     * only once per batch for every distinct station and timestamp.
+     * Every request gets its own result, so one invalid request (also a null request) does not fail the whole batch.
+     *
+     * @param feeRequests Delivery fee requests
+     * @return Calculated delivery fee or the reason why it could not be calculated for every request in the same order
+     */
+    public List<FeeResponse> calculateFees(List<FeeRequest> feeRequests) {
+        FeeTable table = feeTable;
+        Instant staleBefore = staleBefore();
+        Map<String, Optional<WeatherData>> historicalWeatherData = new HashMap<>();
+        List<FeeResponse> feeResponses = new ArrayList<>(feeRequests.size());
+
+        for (FeeRequest feeRequest : feeRequests) {
+            String city = feeRequest == null ? null : feeRequest.getCity();
+            String vehicle = feeRequest == null ? null : feeRequest.getVehicle();
+            Instant timestamp = feeRequest == null ? null : feeRequest.getTimestamp();
+            long start = System.nanoTime();
+            FeeResult result;
+            if (city == null || vehicle == null) {
+                result = city == null ? FeeResult.INVALID_CITY : FeeResult.INVALID_VEHICLE;
+            } else if (timestamp == null) {
+                result = table.lookup(city, vehicle, staleBefore);
+            } else {
+                result = calculateHistoricalFee(city, vehicle, timestamp, historicalWeatherData);
+            }
+            deliveryFeeMetrics.recordFee(city, vehicle, result, System.nanoTime() - start);
+            feeResponses.add(new FeeResponse(city, vehicle, timestamp,
+                    result.isSuccess() ? result.getBreakdown().getTotal() : null, result.getReason()));
+        }
+        return feeResponses;
+    }
+
+    /**
+     * @return Weather data observed before this time is too old for calculating delivery fees, or null if the stale data
+     * policy allows weather data of any age
+     */
+    private Instant staleBefore() {
+        return staleDataPolicy == StaleDataPolicy.REJECT ? Instant.now().minus(maxAge) : null;
+    }
+
+    /**
+     * Calculates the delivery fee for a specific vehicle type in a given city based on the weather data at the given time.
+     *
+     * @param city                  The name of the city for which to calculate the delivery fee.
+     * @param vehicle               The type of vehicle for which to calculate the delivery fee.
+     * @param timestamp             Time of the delivery
+     * @param historicalWeatherData Weather data already looked up by station name and timestamp
+     * @return Calculated delivery fee or the reason why it could not be calculated
+     */
+    private FeeResult calculateHistoricalFee(String city, String vehicle, Instant timestamp,
+                                             Map<String, Optional<WeatherData>> historicalWeatherData) {
+        Optional<City> deliveryCity = cityRegistry.find(city);
+        if (deliveryCity.isEmpty()) return FeeResult.INVALID_CITY;
+        String stationName = deliveryCity.get().getStation();
+        Optional<WeatherData> weatherData = historicalWeatherData.computeIfAbsent(stationName + "@" + timestamp,
+                key -> weatherTimeline.findAt(stationName, timestamp));
+        if (weatherData.isEmpty())
+            return FeeResult.rejected(FeeResult.Outcome.NO_WEATHER_DATA, "No weather data available for station " + stationName + " at " + timestamp);
+        return deliveryFeeCalculator.calculateFee(deliveryCity.get(), vehicle.toLowerCase(), weatherData.get());
     }
 
     /**
      * Finds the latest weather data for a specific city.
      * <p>
-     * This method takes in the name of a city and returns the latest weather data available in the database for that location.
-     * The city name is first checked if it matches one of the city names "tartu", "tallinn" or "pärnu".
-     * If it matches, it is converted to the corresponding station name used in the weather data repository.
+     * This method takes in the name of a city and returns the latest weather data available for that location.
+     * The city is looked up from the city registry and its station's latest weather data is returned.
+     * Weather data is read from the latest weather cache, so the database is not touched.
      *
      * @param name The name of the city for which to find the latest weather data.
      * @return The latest weather data for the specified location.
-     * @throws ApiRequestException If an error occurs while retrieving the weather data from the repository.
+     * @throws ApiRequestException If the city name is incorrect or there is no weather data for the station.
      */
     public WeatherData findLatest(String name) throws ApiRequestException {
+        long start = System.nanoTime();
+        Optional<WeatherData> weatherData = cityRegistry.find(name).flatMap(city -> latestWeatherCache.get(city.getStation()));
+        deliveryFeeMetrics.recordLatestLookup(weatherData.isPresent(), System.nanoTime() - start);
+        if (weatherData.isPresent()) return weatherData.get();
 
-        // Check if city name is "tartu", "tallinn" or "pärnu" and convert it to match name in the database(station's name)
-        name = getStationName(name);
-
-        List<WeatherData> weatherDataList = (List<WeatherData>) weatherDataRepository.findAll();
-        String finalName = name;
-        List<WeatherData> latestWeatherDataList = weatherDataList.stream()
-                .filter(weatherData -> finalName.equals(weatherData.getName()))
-                .collect(Collectors.toList());
-        Collections.sort(latestWeatherDataList);
-        return latestWeatherDataList.get(latestWeatherDataList.size() - 1);
+        String stationName = getCity(name).getStation();
+        throw new ApiRequestException("No weather data available for station " + stationName);
     }
 
     /**
-     * Checks if city name is "tartu", "tallinn" or "pärnu" and convert it to match name in the database(station's name)
+     * Finds the city from the city registry.
      *
-     * @param alias station name to check
-     * @return Correct full name of a weather station
-     * @throws ApiRequestException If input name is not matching to Tartu, Tallinn or Pärnu
-     */
-    private String getStationName(String alias) throws ApiRequestException {
-        switch (alias.toLowerCase()) {
-            case "tartu":
-                return "Tartu-Tõravere";
-            case "tallinn":
-                return "Tallinn-Harku";
-            case "pärnu":
-                return "Pärnu";
-            default:
-                throw new ApiRequestException("Invalid city!");
-        }
+     * @param name Name of the city (case-insensitive)
+     * @return City with its weather station and regional base fees
+     * @throws ApiRequestException If there is no such city in the city registry
+     */
+    private City getCity(String name) throws ApiRequestException {
+        return cityRegistry.find(name).orElseThrow(() -> new ApiRequestException("Invalid city!"));
     }
 }
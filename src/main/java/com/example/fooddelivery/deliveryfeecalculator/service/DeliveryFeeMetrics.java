@@ -0,0 +1,234 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Metrics of the delivery fee calculation and the weather data import, exposed through Actuator
+ * (/actuator/metrics and /actuator/prometheus).
+ * <p>
+ * City and vehicle tags are taken only from known cities and vehicle types, anything else is tagged as "unknown",
+ * so invalid requests cannot create an unbounded number of time series. Timers of delivery fee calculations are
+ * registered on first use of every city, vehicle and outcome combination and cached in an array, so recording
+ * a calculation only looks up the timer; timers of cities that were removed are removed from the registry.
+ * Latency percentiles are published by a separate timer tagged by outcome only, so the number of histogram
+ * series does not grow with the number of cities.
+ */
+@Component
+public class DeliveryFeeMetrics {
+    public static final String FEE_CALCULATION = "delivery.fee.calculation";
+    public static final String FEE_LATENCY = "delivery.fee.latency";
+    public static final String LATEST_LOOKUP = "weather.latest.lookup";
+    public static final String IMPORT_FETCH = "weather.import.fetch";
+    public static final String IMPORT_PARSE = "weather.import.parse";
+    public static final String IMPORT_JOB = "weather.import.job";
+    public static final String DATA_AGE = "weather.data.age";
+
+    private static final String UNKNOWN = "unknown";
+    private static final String[] OUTCOME_TAGS = Arrays.stream(FeeResult.Outcome.values())
+            .map(outcome -> outcome.name().toLowerCase()).toArray(String[]::new); // Tags indexed by the outcome
+
+    private final MeterRegistry meterRegistry;
+    private final LatestWeatherCache latestWeatherCache;
+    private final Timer parseTimer;
+    private final Timer latestFound;
+    private final Timer latestNotFound;
+    private final Timer[] feeLatency; // Latency timers indexed by the outcome
+    private final MultiGauge dataAge;
+    private volatile FeeTimers feeTimers; // Timers of delivery fee calculations of the current cities
+
+    @Autowired
+    public DeliveryFeeMetrics(MeterRegistry meterRegistry, CityRegistry cityRegistry, LatestWeatherCache latestWeatherCache) {
+        this.meterRegistry = meterRegistry;
+        this.latestWeatherCache = latestWeatherCache;
+        this.parseTimer = Timer.builder(IMPORT_PARSE)
+                .description("Time of parsing the observations feed")
+                .register(meterRegistry);
+        this.latestFound = latestLookupTimer("success");
+        this.latestNotFound = latestLookupTimer("not_found");
+        this.feeLatency = Arrays.stream(OUTCOME_TAGS)
+                .map(outcome -> Timer.builder(FEE_LATENCY)
+                        .description("Time of calculating a delivery fee, for latency percentiles")
+                        .tag("outcome", outcome)
+                        .register(meterRegistry))
+                .toArray(Timer[]::new);
+        this.feeTimers = new FeeTimers(cityRegistry.getCities());
+        this.dataAge = MultiGauge.builder(DATA_AGE)
+                .description("Time since the latest weather data of the station was observed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a delivery fee calculation.
+     *
+     * @param city     City of the request
+     * @param vehicle  Vehicle type of the request
+     * @param result   Calculated delivery fee or the reason why it could not be calculated
+     * @param duration Duration of the calculation in nanoseconds
+     */
+    public void recordFee(String city, String vehicle, FeeResult result, long duration) {
+        feeTimers.get(city, vehicle, result.getOutcome()).record(duration, TimeUnit.NANOSECONDS);
+        feeLatency[result.getOutcome().ordinal()].record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts using the cities for the city tags of delivery fee calculations, if the cities have changed.
+     * Timers of the cities that are not in the list anymore are removed.
+     *
+     * @param cities Cities of the city registry
+     */
+    public synchronized void updateCities(List<City> cities) {
+        if (cities == feeTimers.cities) return;
+        feeTimers = new FeeTimers(cities);
+        Set<String> names = new HashSet<>();
+        for (City city : cities) names.add(city.getName());
+        for (Meter meter : meterRegistry.find(FEE_CALCULATION).meters()) {
+            String city = meter.getId().getTag("city");
+            if (!UNKNOWN.equals(city) && !names.contains(city)) meterRegistry.remove(meter);
+        }
+    }
+
+    /**
+     * Records a lookup of the latest weather data of a city.
+     *
+     * @param found    Whether the weather data was found
+     * @param duration Duration of the lookup in nanoseconds
+     */
+    public void recordLatestLookup(boolean found, long duration) {
+        (found ? latestFound : latestNotFound).record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer latestLookupTimer(String outcome) {
+        return Timer.builder(LATEST_LOOKUP)
+                .description("Time of looking up the latest weather data of a city")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a fetch of the observations feed. Fetch time includes retries and parsing the response.
+     *
+     * @param outcome  Outcome of the fetch: success, not_modified or failure
+     * @param duration Duration of the fetch in nanoseconds
+     */
+    public void recordFetch(String outcome, long duration) {
+        Timer.builder(IMPORT_FETCH)
+                .description("Time of fetching the observations feed")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a weather data import job requested with POST /.
+     *
+     * @param status   Final status of the job: succeeded, failed or coalesced
+     * @param duration Duration of the import in nanoseconds
+     */
+    public void recordImportJob(String status, long duration) {
+        Timer.builder(IMPORT_JOB)
+                .description("Time of the requested weather data imports")
+                .tag("status", status)
+                .register(meterRegistry)
+                .record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records parsing of the observations feed.
+     *
+     * @param duration Duration of parsing in nanoseconds
+     */
+    public void recordParse(long duration) {
+        parseTimer.record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers the weather data age gauge of every given station. Gauges of the stations that are not in the list
+     * anymore are removed.
+     *
+     * @param stations Names of the stations of the cities
+     */
+    public void updateStations(Collection<String> stations) {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        for (String station : stations) {
+            rows.add(MultiGauge.Row.of(Tags.of("station", station), latestWeatherCache, cache -> dataAge(cache, station)));
+        }
+        dataAge.register(rows, true);
+    }
+
+    /**
+     * @return Age of the latest weather data of the station in seconds or NaN if there is no weather data
+     */
+    private static double dataAge(LatestWeatherCache cache, String station) {
+        return cache.get(station)
+                .map(weatherData -> (double) Duration.between(weatherData.getTimestamp(), Instant.now()).toSeconds())
+                .orElse(Double.NaN);
+    }
+
+    /**
+     * Delivery fee calculation timers of every city, vehicle and outcome, including the unknown city and vehicle.
+     * Timers are registered on first use.
+     */
+    private final class FeeTimers {
+        private static final int VEHICLES = FeeTable.VEHICLES.size() + 1; // Known vehicles and the unknown vehicle
+        private static final int OUTCOMES = OUTCOME_TAGS.length;
+
+        private final List<City> cities;
+        private final Map<String, Integer> cityIndexes; // Indexes of the cities by name and lowercase name
+        private final List<String> cityTags; // Tags indexed by the city, the unknown city is the last one
+        private final AtomicReferenceArray<Timer> timers; // Timers indexed by (city * VEHICLES + vehicle) * OUTCOMES + outcome
+
+        private FeeTimers(List<City> cities) {
+            this.cities = cities;
+            Map<String, Integer> indexes = new HashMap<>();
+            List<String> tags = new ArrayList<>();
+            for (City city : cities) {
+                indexes.putIfAbsent(city.getName().toLowerCase(), tags.size());
+                indexes.putIfAbsent(city.getName(), tags.size());
+                tags.add(city.getName());
+            }
+            tags.add(UNKNOWN);
+            this.cityIndexes = Map.copyOf(indexes);
+            this.cityTags = List.copyOf(tags);
+            this.timers = new AtomicReferenceArray<>(cityTags.size() * VEHICLES * OUTCOMES);
+        }
+
+        Timer get(String city, String vehicle, FeeResult.Outcome outcome) {
+            int cityIndex = city == null ? -1 : FeeTable.indexOf(cityIndexes, city);
+            if (cityIndex < 0) cityIndex = cityTags.size() - 1;
+            int vehicleIndex = vehicle == null ? -1 : FeeTable.indexOf(FeeTable.VEHICLE_INDEXES, vehicle);
+            if (vehicleIndex < 0) vehicleIndex = VEHICLES - 1;
+            int index = (cityIndex * VEHICLES + vehicleIndex) * OUTCOMES + outcome.ordinal();
+            Timer timer = timers.get(index);
+            if (timer == null) {
+                // Registering the same timer again returns the registered one, so racing threads get the same timer
+                timer = Timer.builder(FEE_CALCULATION)
+                        .description("Time of calculating a delivery fee")
+                        .tag("city", cityTags.get(cityIndex))
+                        .tag("vehicle", vehicleIndex < FeeTable.VEHICLES.size() ? FeeTable.VEHICLES.get(vehicleIndex) : UNKNOWN)
+                        .tag("outcome", OUTCOME_TAGS[outcome.ordinal()])
+                        .register(meterRegistry);
+                timers.set(index, timer);
+            }
+            return timer;
+        }
+    }
+}
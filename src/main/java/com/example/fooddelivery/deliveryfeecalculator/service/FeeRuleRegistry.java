@@ -0,0 +1,65 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRule;
+import com.example.fooddelivery.deliveryfeecalculator.repository.FeeRuleRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Registry of the extra fee rules stored in the FEE_RULE table.
+ * <p>
+ * Rules are compiled when they are loaded and the compiled rules of the delivery fee calculator are replaced as
+ * a whole, so tariffs can be changed in the database while requests are served, without restarting the application.
+ * Invalid rules are rejected and the previous rules stay in use.
+ */
+@Slf4j
+@Component
+public class FeeRuleRegistry {
+    private final FeeRuleRepository feeRuleRepository;
+    private final DeliveryFeeCalculator deliveryFeeCalculator;
+    private List<FeeRule> ruleList = List.of(); // Rules in use, sorted by id
+
+    @Autowired
+    public FeeRuleRegistry(FeeRuleRepository feeRuleRepository, DeliveryFeeCalculator deliveryFeeCalculator) {
+        this.feeRuleRepository = feeRuleRepository;
+        this.deliveryFeeCalculator = deliveryFeeCalculator;
+    }
+
+    @PostConstruct
+    public void loadRules() {
+        reload();
+    }
+
+    /**
+     * Loads the rules from the database and compiles them for the delivery fee calculator.
+     *
+     * @return true if rules were changed since the previous load, false otherwise
+     * @throws IllegalArgumentException If the rules are invalid, the previous rules are kept in that case
+     */
+    public synchronized boolean reload() {
+        List<FeeRule> loaded = new ArrayList<>();
+        feeRuleRepository.findAll().forEach(loaded::add);
+        loaded.sort(Comparator.comparing(FeeRule::getId));
+        if (loaded.equals(ruleList)) return false;
+
+        FeeRules feeRules = FeeRules.compile(loaded);
+        deliveryFeeCalculator.setFeeRules(feeRules);
+        ruleList = List.copyOf(loaded);
+        log.info("Loaded {} fee rules", feeRules.size());
+        return true;
+    }
+
+    /**
+     * @return Immutable list of the rules in use, sorted by id
+     */
+    public synchronized List<FeeRule> getRules() {
+        return ruleList;
+    }
+}
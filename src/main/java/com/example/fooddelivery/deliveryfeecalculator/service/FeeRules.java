@@ -0,0 +1,233 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRule;
+import com.example.fooddelivery.deliveryfeecalculator.model.PhenomenonCategory;
+
+import java.util.*;
+
+
+/**
+ * Immutable set of extra fee rules, compiled for evaluation.
+ * <p>
+ * Rules are compiled once when they are loaded: air temperature and wind speed rules of every vehicle into arrays of
+ * ranges sorted by their lower bound, which are searched with a binary search, and weather phenomenon rules into
+ * an array of fees indexed by the phenomenon category. Evaluation does not allocate and its cost does not depend on
+ * the number of vehicles and phenomena, and grows only logarithmically with the number of ranges.
+ * <p>
+ * A fee of NaN means that the usage of the vehicle is forbidden.
+ */
+public final class FeeRules {
+    /**
+     * Fee of the rules that forbid the usage of the vehicle.
+     */
+    public static final double FORBIDDEN = Double.NaN;
+
+    private static final VehicleRules NO_RULES = new VehicleRules(Ranges.EMPTY, Ranges.EMPTY, new double[PhenomenonCategory.values().length]);
+
+    /**
+     * Rules of the task description, the same rules that the FEE_RULE table is created with. Used until the rules
+     * are loaded from the database.
+     */
+    public static final FeeRules DEFAULT = compile(defaultRules());
+
+    private final Map<String, VehicleRules> vehicles;
+    private final int size;
+
+    private FeeRules(Map<String, VehicleRules> vehicles, int size) {
+        this.vehicles = vehicles;
+        this.size = size;
+    }
+
+    private record VehicleRules(Ranges airTemperature, Ranges windSpeed, double[] phenomena) {
+    }
+
+    /**
+     * Compiles the rules.
+     *
+     * @param rules Rules of every vehicle and extra fee
+     * @return Compiled rules
+     * @throws IllegalArgumentException If a rule is invalid or the ranges of two rules overlap
+     */
+    public static FeeRules compile(Collection<FeeRule> rules) {
+        Map<String, List<FeeRule>> airTemperature = new HashMap<>();
+        Map<String, List<FeeRule>> windSpeed = new HashMap<>();
+        Map<String, double[]> phenomena = new HashMap<>();
+        Set<String> vehicles = new HashSet<>();
+
+        for (FeeRule rule : rules) {
+            if (rule.getVehicle() == null) throw invalid(rule, "vehicle is missing");
+            String vehicle = rule.getVehicle().toLowerCase();
+            vehicles.add(vehicle);
+            if (rule.getComponent() == null) throw invalid(rule, "component is missing");
+            switch (rule.getComponent()) {
+                case FeeRule.ATEF -> airTemperature.computeIfAbsent(vehicle, key -> new ArrayList<>()).add(rule);
+                case FeeRule.WSEF -> windSpeed.computeIfAbsent(vehicle, key -> new ArrayList<>()).add(rule);
+                case FeeRule.WPEF -> {
+                    double[] fees = phenomena.computeIfAbsent(vehicle, key -> new double[PhenomenonCategory.values().length]);
+                    int category = category(rule).ordinal();
+                    if (fees[category] != 0) throw invalid(rule, "phenomenon " + rule.getPhenomenon() + " has several rules");
+                    fees[category] = fee(rule);
+                }
+                default -> throw invalid(rule, "unknown component " + rule.getComponent());
+            }
+        }
+
+        Map<String, VehicleRules> compiled = new HashMap<>();
+        for (String vehicle : vehicles) {
+            compiled.put(vehicle, new VehicleRules(
+                    Ranges.compile(airTemperature.getOrDefault(vehicle, List.of())),
+                    Ranges.compile(windSpeed.getOrDefault(vehicle, List.of())),
+                    phenomena.getOrDefault(vehicle, NO_RULES.phenomena())));
+        }
+        return new FeeRules(Map.copyOf(compiled), rules.size());
+    }
+
+    /**
+     * @param vehicle Vehicle type (lowercase)
+     * @param airTemp Air temperature
+     * @return Air temperature extra fee (ATEF), 0 if no rule applies or FORBIDDEN
+     */
+    public double airTemperatureFee(String vehicle, double airTemp) {
+        return rules(vehicle).airTemperature().fee(airTemp);
+    }
+
+    /**
+     * @param vehicle   Vehicle type (lowercase)
+     * @param windSpeed Wind speed
+     * @return Wind speed extra fee (WSEF), 0 if no rule applies or FORBIDDEN
+     */
+    public double windSpeedFee(String vehicle, double windSpeed) {
+        return rules(vehicle).windSpeed().fee(windSpeed);
+    }
+
+    /**
+     * @param vehicle    Vehicle type (lowercase)
+     * @param phenomenon Category of the weather phenomenon
+     * @return Weather phenomenon extra fee (WPEF), 0 if no rule applies or FORBIDDEN
+     */
+    public double phenomenonFee(String vehicle, PhenomenonCategory phenomenon) {
+        return rules(vehicle).phenomena()[phenomenon.ordinal()];
+    }
+
+    /**
+     * @return Number of rules
+     */
+    public int size() {
+        return size;
+    }
+
+    private VehicleRules rules(String vehicle) {
+        VehicleRules rules = vehicles.get(vehicle);
+        return rules == null ? NO_RULES : rules;
+    }
+
+    private static PhenomenonCategory category(FeeRule rule) {
+        try {
+            return PhenomenonCategory.valueOf(String.valueOf(rule.getPhenomenon()));
+        } catch (IllegalArgumentException e) {
+            throw invalid(rule, "unknown phenomenon " + rule.getPhenomenon());
+        }
+    }
+
+    private static double fee(FeeRule rule) {
+        if (rule.isForbidden()) return FORBIDDEN;
+        if (!(rule.getFee() > 0)) throw invalid(rule, "fee must be positive");
+        return rule.getFee();
+    }
+
+    private static IllegalArgumentException invalid(FeeRule rule, String reason) {
+        return new IllegalArgumentException("Invalid fee rule " + rule.getId() + ": " + reason);
+    }
+
+    /**
+     * Non-overlapping ranges of values and their fees, sorted by the lower bound.
+     */
+    private static final class Ranges {
+        static final Ranges EMPTY = new Ranges(new double[0], new boolean[0], new double[0], new boolean[0], new double[0]);
+
+        private final double[] min; // Lower bounds, -Infinity if unbounded
+        private final boolean[] minInclusive;
+        private final double[] max; // Upper bounds, Infinity if unbounded
+        private final boolean[] maxInclusive;
+        private final double[] fees;
+
+        private Ranges(double[] min, boolean[] minInclusive, double[] max, boolean[] maxInclusive, double[] fees) {
+            this.min = min;
+            this.minInclusive = minInclusive;
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+            this.fees = fees;
+        }
+
+        static Ranges compile(List<FeeRule> rules) {
+            if (rules.isEmpty()) return EMPTY;
+            List<FeeRule> sorted = new ArrayList<>(rules);
+            // Ranges with the same lower bound are only valid if the first one contains only its lower bound
+            sorted.sort(Comparator.comparingDouble(Ranges::min).thenComparing(rule -> !rule.isMin_inclusive()));
+
+            int size = sorted.size();
+            Ranges ranges = new Ranges(new double[size], new boolean[size], new double[size], new boolean[size], new double[size]);
+            for (int i = 0; i < size; i++) {
+                FeeRule rule = sorted.get(i);
+                ranges.min[i] = min(rule);
+                ranges.minInclusive[i] = rule.isMin_inclusive();
+                ranges.max[i] = rule.getMax_value() == null ? Double.POSITIVE_INFINITY : rule.getMax_value();
+                ranges.maxInclusive[i] = rule.isMax_inclusive();
+                ranges.fees[i] = FeeRules.fee(rule);
+                if (ranges.min[i] > ranges.max[i] || ranges.min[i] == ranges.max[i] && !(ranges.minInclusive[i] && ranges.maxInclusive[i]))
+                    throw invalid(rule, "range is empty");
+                if (i > 0 && (ranges.min[i] < ranges.max[i - 1]
+                        || ranges.min[i] == ranges.max[i - 1] && ranges.minInclusive[i] && ranges.maxInclusive[i - 1]))
+                    throw invalid(rule, "range overlaps with the range of rule " + sorted.get(i - 1).getId());
+            }
+            return ranges;
+        }
+
+        private static double min(FeeRule rule) {
+            return rule.getMin_value() == null ? Double.NEGATIVE_INFINITY : rule.getMin_value();
+        }
+
+        /**
+         * @return Fee of the range containing the value, 0 if no range contains the value
+         */
+        double fee(double value) {
+            // Last range whose lower bound is below the value, ranges do not overlap so only this range can contain it
+            int low = 0;
+            int high = min.length - 1;
+            int found = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (min[middle] < value || min[middle] == value && minInclusive[middle]) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (found < 0) return 0;
+            return value < max[found] || value == max[found] && maxInclusive[found] ? fees[found] : 0;
+        }
+    }
+
+    /**
+     * @return Rules of the task description
+     */
+    static List<FeeRule> defaultRules() {
+        List<FeeRule> rules = new ArrayList<>();
+        for (String vehicle : List.of("scooter", "bike")) {
+            rules.add(FeeRule.range(FeeRule.ATEF, vehicle, null, false, -10.0, false, 1, false));
+            rules.add(FeeRule.range(FeeRule.ATEF, vehicle, -10.0, true, 0.0, true, 0.5, false));
+        }
+        rules.add(FeeRule.range(FeeRule.WSEF, "bike", 10.0, true, 20.0, true, 0.5, false));
+        rules.add(FeeRule.range(FeeRule.WSEF, "bike", 20.0, false, null, false, 0, true));
+        for (String vehicle : List.of("scooter", "bike")) {
+            rules.add(FeeRule.phenomenon(vehicle, PhenomenonCategory.SNOW, 1, false));
+            rules.add(FeeRule.phenomenon(vehicle, PhenomenonCategory.SLEET, 1, false));
+            rules.add(FeeRule.phenomenon(vehicle, PhenomenonCategory.RAIN, 0.5, false));
+            rules.add(FeeRule.phenomenon(vehicle, PhenomenonCategory.GLAZE, 0, true));
+            rules.add(FeeRule.phenomenon(vehicle, PhenomenonCategory.HAIL, 0, true));
+            rules.add(FeeRule.phenomenon(vehicle, PhenomenonCategory.THUNDER, 0, true));
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeSnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Pushes the delivery fees and the latest weather data to the subscribers of the fee stream (server-sent events)
+ * whenever they change, so clients do not have to poll for changes.
+ * <p>
+ * Every snapshot is serialized to JSON once, and the JSON is shared by the events of all subscribers. Events are sent
+ * by a small pool of sender threads, never by the thread that publishes the weather data. Every subscriber has room for
+ * a single pending event: a subscriber that is still receiving the previous event when a new one is published skips
+ * to the newest one, so slow consumers do not delay the others and do not make events pile up in memory.
+ * New subscribers receive the current snapshot immediately.
+ * <p>
+ * Sending blocks the sender thread until the event is written, so a subscriber whose send takes longer than the send
+ * timeout (e.g. a client that stopped reading) is dropped: it gets no more events, and a sender thread is added in
+ * place of the blocked one until its send returns, after which its emitter is completed.
+ */
+@Slf4j
+@Component
+public class FeeStreamBroadcaster {
+    static final String EVENT_NAME = "fees";
+    // Comment line, sent to idle subscribers so proxies do not close the connection
+    private static final Event HEARTBEAT = new Event(null, null);
+
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final int maxSubscribers;
+    private final Duration sendTimeout;
+    private final ThreadPoolExecutor senders;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private volatile Event latest; // Event of the latest snapshot, null until the first snapshot
+
+    @Autowired
+    public FeeStreamBroadcaster(ObjectMapper objectMapper,
+                                @Value("${app.stream.timeout}") Duration timeout,
+                                @Value("${app.stream.max-subscribers}") int maxSubscribers,
+                                @Value("${app.stream.sender-threads}") int senderThreads,
+                                @Value("${app.stream.send-timeout}") Duration sendTimeout) {
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.maxSubscribers = maxSubscribers;
+        this.sendTimeout = sendTimeout;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("fee-stream-");
+        threadFactory.setDaemon(true);
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    @PreDestroy
+    public void close() {
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) subscriber.emitter.complete();
+        subscribers.clear();
+    }
+
+    /**
+     * Subscribes a new client to the fee stream. The subscription ends when the client disconnects or the timeout
+     * is reached, clients are expected to reconnect (browsers' EventSource does it automatically).
+     *
+     * @return Emitter of the events of the new subscriber, empty if the maximum number of subscribers is reached
+     */
+    public Optional<SseEmitter> subscribe() {
+        if (subscribers.size() >= maxSubscribers) return Optional.empty();
+        Subscriber subscriber = new Subscriber(newEmitter(timeout.toMillis()));
+        subscribers.add(subscriber);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(e -> subscribers.remove(subscriber));
+        Event event = latest;
+        if (event != null) subscriber.offer(event);
+        return Optional.of(subscriber.emitter);
+    }
+
+    /**
+     * Sends the snapshot to every subscriber. Only serializes the snapshot, sending is done by the sender threads.
+     *
+     * @param snapshot Delivery fees and the weather data they were calculated from
+     */
+    public void broadcast(FeeSnapshot snapshot) {
+        Event event;
+        try {
+            event = new Event(snapshot.getVersion(), objectMapper.writeValueAsString(snapshot));
+        } catch (JsonProcessingException e) {
+            log.error("Fee snapshot {} was not serialized", snapshot.getVersion(), e);
+            return;
+        }
+        latest = event;
+        for (Subscriber subscriber : subscribers) subscriber.offer(event);
+    }
+
+    /**
+     * Sends a heartbeat to the subscribers that have no pending event.
+     */
+    @Scheduled(fixedRateString = "${app.stream.heartbeat-rate}", initialDelayString = "${app.stream.heartbeat-rate}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) subscriber.offerIfIdle(HEARTBEAT);
+    }
+
+    /**
+     * Drops the subscribers whose current send has taken longer than the send timeout, and adds a sender thread
+     * in place of each of them until their send returns, so the other subscribers keep receiving events.
+     */
+    @Scheduled(fixedRateString = "${app.stream.send-timeout}", initialDelayString = "${app.stream.send-timeout}")
+    public void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.markStalled(now, sendTimeout.toNanos())) continue;
+            subscribers.remove(subscriber);
+            subscriber.pending.set(null);
+            resizeSenders(1);
+            log.info("Fee stream subscriber dropped, sending an event took longer than {}", sendTimeout);
+        }
+    }
+
+    private synchronized void resizeSenders(int delta) {
+        int size = senders.getCorePoolSize() + delta;
+        // Maximum size can not be smaller than the core size
+        if (delta > 0) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * @return Number of current subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicReference<Event> pending = new AtomicReference<>(); // Newest event not sent yet
+        private final AtomicBoolean sending = new AtomicBoolean(); // Whether a sender thread is draining the events
+        private boolean inSend; // Whether an event is being sent (guarded by this)
+        private long sendStarted; // System.nanoTime() when the current send started (guarded by this)
+        private boolean stalled; // Whether the subscriber was dropped for a send that took too long (guarded by this)
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            pending.set(event); // Replaces an event that has not been sent yet
+            schedule();
+        }
+
+        void offerIfIdle(Event event) {
+            if (!sending.get() && pending.compareAndSet(null, event)) schedule();
+        }
+
+        private void schedule() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) { // Rejected after shutdown
+                    sending.set(false);
+                }
+            }
+        }
+
+        private synchronized void startSend() {
+            inSend = true;
+            sendStarted = System.nanoTime();
+        }
+
+        /**
+         * @return Whether the subscriber was dropped while the event was being sent
+         */
+        private synchronized boolean endSend() {
+            inSend = false;
+            return stalled;
+        }
+
+        /**
+         * @return Whether the current send has taken longer than the timeout and the subscriber was not marked before
+         */
+        synchronized boolean markStalled(long now, long timeoutNanos) {
+            if (!inSend || stalled || now - sendStarted <= timeoutNanos) return false;
+            stalled = true;
+            return true;
+        }
+
+        private void drain() {
+            boolean dropped = false;
+            try {
+                Event event;
+                while (!dropped && (event = pending.getAndSet(null)) != null) {
+                    startSend();
+                    emitter.send(event.toBuilder());
+                    dropped = endSend();
+                }
+            } catch (IOException | IllegalStateException e) { // Client disconnected or the emitter has completed
+                dropped = endSend();
+                subscribers.remove(this);
+                pending.set(null);
+                log.debug("Fee stream subscriber removed: {}", e.getMessage());
+                if (!dropped) return;
+            } finally {
+                sending.set(false);
+            }
+            if (dropped) {
+                // The sender thread that was added in place of this one is no longer needed
+                resizeSenders(-1);
+                emitter.completeWithError(new TimeoutException("Sending a fee stream event took longer than " + sendTimeout));
+                return;
+            }
+            // An event offered after the last check, but before the flag was cleared, would not be sent otherwise
+            if (pending.get() != null) schedule();
+        }
+    }
+
+    /**
+     * Event of a snapshot, or a heartbeat if it has no data. The serialized snapshot is shared by the events of all
+     * subscribers, and a new event builder is created for every send as building an event modifies the builder.
+     */
+    private record Event(String id, String json) {
+        SseEmitter.SseEventBuilder toBuilder() {
+            if (json == null) return SseEmitter.event().comment("");
+            return SseEmitter.event().id(id).name(EVENT_NAME).data(json, MediaType.APPLICATION_JSON);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+
+import java.time.Instant;
+import java.util.*;
+
+
+/**
+ * Immutable table of precomputed delivery fees for every city and vehicle combination.
+ * <p>
+ * Delivery fee depends only on the city, the vehicle and the latest weather data of the city's station, so the
+ * whole table is calculated once per weather data import. Fee requests are then served by looking up the
+ * precomputed entry from an array, including the entries where the usage of the vehicle is forbidden.
+ * <p>
+ * Every table has a version derived from its content (cities, weather data and fees), so tables built from the same
+ * data have the same version, also on different instances of the application.
+ */
+public final class FeeTable {
+    static final List<String> VEHICLES = List.of("car", "scooter", "bike"); // Vehicle types in the order of the entries
+    static final Map<String, Integer> VEHICLE_INDEXES = indexes(VEHICLES);
+
+    private final List<String> cityNames;
+    private final Map<String, Integer> cityIndexes;
+    private final FeeResult[] missingWeatherData; // Result for cities without weather data, null if city has weather data
+    private final Instant[] observed; // Time of the weather data of each city, null if city has no weather data or it has no time
+    private final FeeResult[] staleWeatherData; // Result for cities whose weather data is too old
+    private final FeeResult[] entries; // Results indexed by city * number of vehicles + vehicle
+    private final String version;
+
+    private FeeTable(List<String> cityNames, Map<String, Integer> cityIndexes, FeeResult[] missingWeatherData, Instant[] observed, FeeResult[] staleWeatherData, FeeResult[] entries, String version) {
+        this.cityNames = cityNames;
+        this.cityIndexes = cityIndexes;
+        this.missingWeatherData = missingWeatherData;
+        this.observed = observed;
+        this.staleWeatherData = staleWeatherData;
+        this.entries = entries;
+        this.version = version;
+    }
+
+    /**
+     * Calculates delivery fees of every city and vehicle combination.
+     *
+     * @param cities                Cities of the city registry
+     * @param weatherData           Latest weather data by station name
+     * @param deliveryFeeCalculator Calculator used for calculating the delivery fees
+     * @return Table of delivery fees
+     */
+    public static FeeTable build(List<City> cities, Map<String, WeatherData> weatherData, DeliveryFeeCalculator deliveryFeeCalculator) {
+        FeeResult[] missingWeatherData = new FeeResult[cities.size()];
+        Instant[] observed = new Instant[cities.size()];
+        FeeResult[] staleWeatherData = new FeeResult[cities.size()];
+        FeeResult[] entries = new FeeResult[cities.size() * VEHICLES.size()];
+        List<String> cityNames = new ArrayList<>(cities.size());
+        Map<String, Integer> cityIndexes = new HashMap<>();
+        long latestObservation = 0;
+        int hash = 1;
+
+        for (int city = 0; city < cities.size(); city++) {
+            cityNames.add(cities.get(city).getName());
+            cityIndexes.put(cities.get(city).getName().toLowerCase(), city);
+            cityIndexes.put(cities.get(city).getName(), city);
+            String stationName = cities.get(city).getStation();
+            WeatherData stationWeatherData = weatherData.get(stationName);
+            hash = 31 * hash + Objects.hash(cities.get(city), observationHash(stationWeatherData));
+            if (stationWeatherData == null) {
+                missingWeatherData[city] = FeeResult.rejected(FeeResult.Outcome.NO_WEATHER_DATA, "No weather data available for station " + stationName);
+                continue;
+            }
+            observed[city] = stationWeatherData.getTimestamp();
+            if (observed[city] != null) latestObservation = Math.max(latestObservation, observed[city].getEpochSecond());
+            staleWeatherData[city] = FeeResult.rejected(FeeResult.Outcome.STALE, "Weather data of station " + stationName + " is outdated");
+            for (int vehicle = 0; vehicle < VEHICLES.size(); vehicle++) {
+                entries[city * VEHICLES.size() + vehicle] = deliveryFeeCalculator.calculateFee(cities.get(city), VEHICLES.get(vehicle), stationWeatherData);
+            }
+        }
+        hash = 31 * hash + Arrays.hashCode(entries);
+        // Time of the latest observation makes versions of different imports distinct even if their hashes collide
+        String version = Long.toHexString(latestObservation) + "-" + Integer.toHexString(hash);
+        return new FeeTable(List.copyOf(cityNames), Map.copyOf(cityIndexes), missingWeatherData, observed, staleWeatherData, entries, version);
+    }
+
+    /**
+     * Database id is not part of the hash: instances that imported the weather data themselves and instances that
+     * loaded it from the database must get the same version.
+     */
+    private static int observationHash(WeatherData weatherData) {
+        if (weatherData == null) return 0;
+        return Objects.hash(weatherData.getName(), weatherData.getWMO(), weatherData.getAir_temp(), weatherData.getWind_speed(),
+                weatherData.getWeather_phenomenon(), weatherData.getTimestamp());
+    }
+
+    /**
+     * @return Version of the table, equal for tables built from the same cities, weather data and fee rules
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Looks up the precomputed delivery fee of the city and vehicle.
+     * <p>
+     * City and vehicle names are case-insensitive. Lowercase names are found without any conversion.
+     *
+     * @param city    Name of the city
+     * @param vehicle Type of the vehicle
+     * @return Precomputed delivery fee or the reason why the delivery fee can not be given
+     */
+    public FeeResult lookup(String city, String vehicle) {
+        return lookup(city, vehicle, null);
+    }
+
+    /**
+     * Looks up the precomputed delivery fee of the city and vehicle, unless the weather data of the city's station
+     * is older than the given time. Weather data without an observation time is considered outdated then.
+     *
+     * @param city        Name of the city
+     * @param vehicle     Type of the vehicle
+     * @param staleBefore Weather data observed before this time is considered outdated, null if any weather data can be used
+     * @return Precomputed delivery fee or the reason why the delivery fee can not be given
+     */
+    public FeeResult lookup(String city, String vehicle, Instant staleBefore) {
+        int cityIndex = indexOf(cityIndexes, city);
+        if (cityIndex < 0) return FeeResult.INVALID_CITY;
+        if (missingWeatherData[cityIndex] != null) return missingWeatherData[cityIndex];
+        if (staleBefore != null && (observed[cityIndex] == null || observed[cityIndex].isBefore(staleBefore)))
+            return staleWeatherData[cityIndex];
+        int vehicleIndex = indexOf(VEHICLE_INDEXES, vehicle);
+        if (vehicleIndex < 0) return FeeResult.INVALID_VEHICLE;
+        return entries[cityIndex * VEHICLES.size() + vehicleIndex];
+    }
+
+    /**
+     * @return Precomputed delivery fees by city and vehicle, in the order of the cities and vehicles.
+     * Outdated weather data is not rejected, its time is in the weather data of the city's station.
+     */
+    public Map<String, Map<String, FeeResult>> toMap() {
+        Map<String, Map<String, FeeResult>> fees = new LinkedHashMap<>();
+        for (int city = 0; city < cityNames.size(); city++) {
+            Map<String, FeeResult> cityFees = new LinkedHashMap<>();
+            for (int vehicle = 0; vehicle < VEHICLES.size(); vehicle++) {
+                cityFees.put(VEHICLES.get(vehicle), missingWeatherData[city] != null
+                        ? missingWeatherData[city] : entries[city * VEHICLES.size() + vehicle]);
+            }
+            fees.put(cityNames.get(city), cityFees);
+        }
+        return fees;
+    }
+
+    static int indexOf(Map<String, Integer> indexes, String name) {
+        Integer index = indexes.get(name);
+        if (index == null) index = indexes.get(name.toLowerCase());
+        return index == null ? -1 : index;
+    }
+
+    private static Map<String, Integer> indexes(List<String> names) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) indexes.put(names.get(i), i);
+        return Map.copyOf(indexes);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.ForecastPeriod;
+import com.example.fooddelivery.deliveryfeecalculator.repository.SchedulerLockRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherForecastRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+
+/**
+ * Quotes delivery fees of scheduled deliveries from the weather forecast of the Estonian Environment Agency.
+ * <p>
+ * The forecast feed is imported periodically (configurable in application.properties file) with its own feed client,
+ * so it is requested with a conditional GET and an unchanged forecast is not downloaded again. After every import
+ * the delivery fees of every city, vehicle and hour of the forecast are precomputed into a forecast fee table, and
+ * delivery fee requests are served by looking them up by the hour of the delivery. The table is recalculated when
+ * the cities or the extra fee rules are reloaded (see DeliveryFeeCalculatorService).
+ * <p>
+ * If several instances of the application share the database, scheduled imports are run by only one instance per
+ * tick (see SchedulerLock). The importing instance stores the feed in the WEATHER_FORECAST table and increments the
+ * version of the forecast import, the other instances poll the version and load the forecast from the database.
+ */
+@Slf4j
+@Service
+@DependsOn("feeRuleRegistry") // The fees of the stored forecast are calculated with the rules from the database
+public class ForecastFeeService {
+    static final String FORECAST_TASK = "weather-forecast";
+
+    private final CityRegistry cityRegistry;
+    private final DeliveryFeeCalculator deliveryFeeCalculator;
+    private final ForecastParser forecastParser;
+    private final DeliveryFeeMetrics deliveryFeeMetrics;
+    private final SchedulerLock schedulerLock;
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final WeatherForecastRepository weatherForecastRepository;
+    private final WeatherFeedClient forecastFeedClient;
+    private final TaskScheduler taskScheduler;
+    private final boolean importOnStartup;
+    private final Object importLock = new Object();
+    private long forecastVersion; // Version of the latest forecast import whose forecast is published by this instance
+    private List<ForecastPeriod> periods = List.of(); // Periods of the latest imported forecast
+    private volatile ForecastFeeTable table = ForecastFeeTable.EMPTY; // Delivery fees calculated from the latest forecast
+
+    @Autowired
+    public ForecastFeeService(CityRegistry cityRegistry, DeliveryFeeCalculator deliveryFeeCalculator, ForecastParser forecastParser, DeliveryFeeMetrics deliveryFeeMetrics,
+                              SchedulerLock schedulerLock, SchedulerLockRepository schedulerLockRepository, WeatherForecastRepository weatherForecastRepository,
+                              @Qualifier("forecastFeedClient") WeatherFeedClient forecastFeedClient, TaskScheduler taskScheduler,
+                              @Value("${app.weather.forecast.import-on-startup}") boolean importOnStartup) {
+        this.cityRegistry = cityRegistry;
+        this.deliveryFeeCalculator = deliveryFeeCalculator;
+        this.forecastParser = forecastParser;
+        this.deliveryFeeMetrics = deliveryFeeMetrics;
+        this.schedulerLock = schedulerLock;
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.weatherForecastRepository = weatherForecastRepository;
+        this.forecastFeedClient = forecastFeedClient;
+        this.taskScheduler = taskScheduler;
+        this.importOnStartup = importOnStartup;
+    }
+
+    /**
+     * Publishes the forecast imported until now from the database.
+     */
+    @PostConstruct
+    public void loadForecast() {
+        synchronize();
+    }
+
+    /**
+     * If enabled in application.properties file, runs a scheduled import on the scheduler of the scheduled tasks
+     * once the application has started, so scheduled deliveries can be quoted soon after the first start instead
+     * of after the first scheduled import.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void importOnStartup() {
+        if (importOnStartup) taskScheduler.schedule(this::runScheduledImport, Instant.now());
+    }
+
+    /**
+     * Imports the forecast periodically, unless another instance is importing it or has just imported it.
+     * The frequency of the import is configurable in application.properties file.
+     *
+     * @return true if the import was run by this instance
+     */
+    @Scheduled(cron = "${app.weather.forecast.cron}")
+    public boolean runScheduledImport() {
+        return schedulerLock.runExclusively(FORECAST_TASK, this::importForecast);
+    }
+
+    /**
+     * Fetches the forecast feed, stores it for the other instances and precomputes the delivery fees of every hour
+     * of the forecast. Imports of this instance never run in parallel.
+     * <p>
+     * If the forecast cannot be fetched, parsed or stored, or it has not changed since the previous fetch, the error
+     * is logged and the previous forecast stays in use.
+     *
+     * @return Number of imported forecast periods, 0 if the forecast was not imported
+     */
+    public int importForecast() {
+        synchronized (importLock) {
+            Optional<byte[]> body;
+            try {
+                body = forecastFeedClient.fetch().join();
+            } catch (CompletionException e) {
+                log.error("Unable to fetch weather forecast", e.getCause());
+                return 0;
+            }
+            if (body.isEmpty()) {
+                log.info("Weather forecast has not changed since the previous fetch");
+                return 0;
+            }
+            List<ForecastPeriod> forecast;
+            long version;
+            try {
+                forecast = forecastParser.parse(new ByteArrayInputStream(body.get()));
+                weatherForecastRepository.save(body.get(), Instant.now());
+                version = schedulerLockRepository.incrementVersion(FORECAST_TASK);
+            } catch (XMLStreamException | RuntimeException e) {
+                // The validators of the response are already stored, the feed must be downloaded again next time
+                forecastFeedClient.invalidate();
+                log.error("Unable to import weather forecast", e);
+                return 0;
+            }
+            synchronized (this) {
+                publishForecast(forecast);
+                // Versions between the previous and the new one are imports of other instances, which are older
+                if (version > forecastVersion) forecastVersion = version;
+            }
+            log.info("Imported weather forecast of {} periods", forecast.size());
+            return forecast.size();
+        }
+    }
+
+    /**
+     * Publishes the forecast imported by another instance. Polls the version of the forecast import, the frequency
+     * is configurable in application.properties file.
+     *
+     * @return true if a new forecast was imported by another instance
+     */
+    @Scheduled(fixedDelayString = "${app.cluster.sync-rate}", initialDelayString = "${app.cluster.sync-rate}")
+    public synchronized boolean synchronize() {
+        long version = schedulerLockRepository.getVersion(FORECAST_TASK);
+        if (version == forecastVersion) return false;
+        Optional<byte[]> feed = weatherForecastRepository.findFeed();
+        if (feed.isEmpty()) return false;
+        try {
+            publishForecast(forecastParser.parse(new ByteArrayInputStream(feed.get())));
+        } catch (XMLStreamException e) { // Only feeds that were parsed by the importing instance are stored
+            // The version is not consumed, so the stored feed is parsed again on the next poll
+            log.error("Unable to parse the stored weather forecast", e);
+            return false;
+        }
+        forecastVersion = version;
+        log.info("Published weather forecast of {} periods imported by another instance", periods.size());
+        return true;
+    }
+
+    /**
+     * Replaces the forecast and recalculates the delivery fees of every city, vehicle and hour of the forecast
+     * with the current cities and extra fee rules.
+     *
+     * @param forecast Periods of the forecast sorted by their start
+     */
+    public synchronized void publishForecast(List<ForecastPeriod> forecast) {
+        periods = List.copyOf(forecast);
+        rebuild();
+    }
+
+    /**
+     * Recalculates the delivery fees of every city, vehicle and hour of the forecast with the current cities and
+     * extra fee rules. Called when the cities or the extra fee rules have been reloaded.
+     */
+    public synchronized void rebuild() {
+        table = ForecastFeeTable.build(cityRegistry.getCities(), periods, deliveryFeeCalculator);
+    }
+
+    /**
+     * Looks up the delivery fee for a specific vehicle type in a given city based on the weather forecast at the time
+     * of a scheduled delivery.
+     * <p>
+     * Delivery fees of every hour of the forecast are precomputed after every forecast import, so this method only
+     * looks up the result of the hour of the delivery.
+     *
+     * @param city      The name of the city for which to calculate the delivery fee.
+     * @param vehicle   The type of vehicle for which to calculate the delivery fee.
+     * @param deliverAt Time of the scheduled delivery
+     * @return Breakdown of the delivery fee or the reason why the delivery fee can not be given
+     */
+    public FeeResult quote(String city, String vehicle, Instant deliverAt) {
+        long start = System.nanoTime();
+        FeeResult result = cityRegistry.find(city).isEmpty()
+                ? FeeResult.INVALID_CITY
+                : table.lookup(city, vehicle, deliverAt);
+        deliveryFeeMetrics.recordFee(city, vehicle, result, System.nanoTime() - start);
+        return result;
+    }
+}
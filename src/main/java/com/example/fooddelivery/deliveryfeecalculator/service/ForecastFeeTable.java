@@ -0,0 +1,129 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.ForecastPeriod;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+
+/**
+ * Immutable table of precomputed delivery fees for every city, vehicle and hour of the weather forecast, for quoting
+ * the delivery fees of scheduled deliveries.
+ * <p>
+ * The table is built in one pass after every forecast import: a fee table of every city and vehicle combination is
+ * calculated once per forecast period, and every hour of the forecast refers to the fee table of its period.
+ * Delivery fees of a scheduled delivery are then looked up by the hour of the delivery from an array, without
+ * any calculation.
+ * <p>
+ * Forecast of a city is the forecast of the place whose name is the name of the city or a part of the name of
+ * the city's station (e.g. Harku for Tallinn-Harku), or the forecast of the whole country if there is no such place.
+ */
+public final class ForecastFeeTable {
+    private static final long HOUR_SECONDS = 3600;
+
+    /**
+     * Table without forecast.
+     */
+    public static final ForecastFeeTable EMPTY = new ForecastFeeTable(null, new FeeTable[0]);
+
+    private final Instant start; // Start of the first hour of the table, null if the table is empty
+    private final FeeTable[] hours; // Delivery fees of every hour, null for hours without forecast
+
+    private ForecastFeeTable(Instant start, FeeTable[] hours) {
+        this.start = start;
+        this.hours = hours;
+    }
+
+    /**
+     * Calculates delivery fees of every city and vehicle combination for every period of the forecast.
+     *
+     * @param cities                Cities of the city registry
+     * @param periods               Periods of the forecast sorted by their start
+     * @param deliveryFeeCalculator Calculator used for calculating the delivery fees
+     * @return Table of hourly delivery fees
+     */
+    public static ForecastFeeTable build(List<City> cities, List<ForecastPeriod> periods, DeliveryFeeCalculator deliveryFeeCalculator) {
+        if (periods.isEmpty()) return EMPTY;
+        Instant start = periods.get(0).getStart().truncatedTo(ChronoUnit.HOURS);
+        Instant end = periods.get(periods.size() - 1).getEnd();
+        FeeTable[] hours = new FeeTable[(int) ((end.getEpochSecond() - start.getEpochSecond() + HOUR_SECONDS - 1) / HOUR_SECONDS)];
+
+        for (ForecastPeriod period : periods) {
+            Map<String, WeatherData> weatherData = new HashMap<>();
+            for (City city : cities) {
+                WeatherData forecast = forecastOf(city, period);
+                if (forecast != null) weatherData.put(city.getStation(), forecast);
+            }
+            FeeTable fees = FeeTable.build(cities, weatherData, deliveryFeeCalculator);
+            int from = hourIndex(start, period.getStart());
+            int to = hourIndex(start, period.getEnd());
+            for (int hour = Math.max(from, 0); hour < to && hour < hours.length; hour++) hours[hour] = fees;
+        }
+        return new ForecastFeeTable(start, hours);
+    }
+
+    /**
+     * @return Forecast of the city's place or of the whole country as weather data of the city's station,
+     * null if the period has no forecast for the city
+     */
+    private static WeatherData forecastOf(City city, ForecastPeriod period) {
+        WeatherData forecast = period.getPlaces().get(city.getName());
+        if (forecast == null && city.getStation() != null) {
+            for (String part : city.getStation().split("-")) {
+                forecast = period.getPlaces().get(part.trim());
+                if (forecast != null) break;
+            }
+        }
+        if (forecast == null) forecast = period.getGeneral();
+        if (forecast == null) return null;
+
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName(city.getStation());
+        weatherData.setAir_temp(forecast.getAir_temp());
+        weatherData.setWind_speed(forecast.getWind_speed());
+        weatherData.setWeather_phenomenon(forecast.getWeather_phenomenon());
+        weatherData.setTimestamp(forecast.getTimestamp());
+        return weatherData;
+    }
+
+    private static int hourIndex(Instant start, Instant time) {
+        return (int) Math.floorDiv(time.getEpochSecond() - start.getEpochSecond(), HOUR_SECONDS);
+    }
+
+    /**
+     * Looks up the precomputed delivery fee of the city and vehicle at the hour of the delivery.
+     *
+     * @param city      Name of the city
+     * @param vehicle   Type of the vehicle
+     * @param deliverAt Time of the scheduled delivery
+     * @return Precomputed delivery fee or the reason why the delivery fee can not be given
+     */
+    public FeeResult lookup(String city, String vehicle, Instant deliverAt) {
+        FeeTable fees = null;
+        if (start != null) {
+            long hour = Math.floorDiv(deliverAt.getEpochSecond() - start.getEpochSecond(), HOUR_SECONDS);
+            if (hour >= 0 && hour < hours.length) fees = hours[(int) hour];
+        }
+        if (fees == null)
+            return FeeResult.rejected(FeeResult.Outcome.NO_WEATHER_DATA, "No weather forecast available for " + deliverAt);
+        return fees.lookup(city, vehicle);
+    }
+
+    /**
+     * @return Start of the forecast, null if the table is empty
+     */
+    public Instant getStart() {
+        return start;
+    }
+
+    /**
+     * @return End of the forecast (exclusive), null if the table is empty
+     */
+    public Instant getEnd() {
+        return start == null ? null : start.plusSeconds(hours.length * HOUR_SECONDS);
+    }
+}
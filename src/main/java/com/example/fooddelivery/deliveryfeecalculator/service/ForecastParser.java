@@ -0,0 +1,212 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.ForecastPeriod;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.*;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+
+/**
+ * Streaming parser for the forecast feed of the Estonian Environment Agency.
+ * <p>
+ * The feed has a forecast element for each of the next days, with a night and a day period. Night of a date is the
+ * period from 18:00 of the previous day to 06:00 and day is the period from 06:00 to 18:00 (Estonian time).
+ * Every period has a forecast of the whole country, forecasts of places and wind forecasts of stations.
+ * <p>
+ * Forecast of a period is turned into weather data: air temperature is the minimum temperature of the night or
+ * the maximum temperature of the day, wind speed is the maximum wind speed of the station with the same name as
+ * the place or the mean of the maximum wind speeds of all stations, and the phenomenon is the phenomenon of the place
+ * or of the whole country. Time of the weather data is the start of the period.
+ */
+@Component
+public class ForecastParser {
+    private static final ZoneId ZONE = ZoneId.of("Europe/Tallinn");
+    private static final LocalTime DAY_START = LocalTime.of(6, 0);
+    private static final LocalTime NIGHT_START = LocalTime.of(18, 0);
+
+    private final XMLInputFactory xmlInputFactory;
+
+    public ForecastParser() {
+        xmlInputFactory = XMLInputFactory.newFactory();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Parses the periods of the forecast feed.
+     * <p>
+     * Forecasts without a valid date are left out of the result.
+     *
+     * @param inputStream Forecast feed
+     * @return Periods of the forecast sorted by their start
+     * @throws XMLStreamException If the feed is not well-formed XML
+     */
+    public List<ForecastPeriod> parse(InputStream inputStream) throws XMLStreamException {
+        List<ForecastPeriod> periods = new ArrayList<>();
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != START_ELEMENT || !reader.getLocalName().equals("forecast")) continue;
+                LocalDate date = parseDate(reader.getAttributeValue(null, "date"));
+                if (date == null) {
+                    skipElement(reader);
+                    continue;
+                }
+                while (reader.nextTag() == START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "night":
+                            periods.add(parsePeriod(reader, date.minusDays(1).atTime(NIGHT_START), date.atTime(DAY_START), true));
+                            break;
+                        case "day":
+                            periods.add(parsePeriod(reader, date.atTime(DAY_START), date.atTime(NIGHT_START), false));
+                            break;
+                        default:
+                            skipElement(reader);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        periods.sort(Comparator.comparing(ForecastPeriod::getStart));
+        return periods;
+    }
+
+    private static LocalDate parseDate(String date) {
+        if (date == null) return null;
+        try {
+            return LocalDate.parse(date.trim());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a night or day element. The reader must be positioned at the start of the element and is left at its end.
+     */
+    private ForecastPeriod parsePeriod(XMLStreamReader reader, LocalDateTime start, LocalDateTime end, boolean night) throws XMLStreamException {
+        Instant startInstant = start.atZone(ZONE).toInstant();
+        Values general = new Values();
+        List<Values> places = new ArrayList<>();
+        Map<String, Double> windSpeeds = new HashMap<>(); // Maximum wind speeds by station name
+
+        while (reader.nextTag() == START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "place":
+                    places.add(parseValues(reader, new Values()));
+                    break;
+                case "wind":
+                    Values wind = parseValues(reader, new Values());
+                    if (wind.name != null && wind.speedMax != null) windSpeeds.put(wind.name, wind.speedMax);
+                    break;
+                default:
+                    if (!general.read(reader)) skipElement(reader);
+            }
+        }
+
+        double meanWindSpeed = windSpeeds.values().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        WeatherData generalWeatherData = general.toWeatherData(null, null, meanWindSpeed, startInstant, night);
+        Map<String, WeatherData> placeWeatherData = new HashMap<>();
+        for (Values place : places) {
+            if (place.name == null) continue;
+            WeatherData weatherData = place.toWeatherData(general.phenomenon, generalWeatherData,
+                    windSpeeds.getOrDefault(place.name, meanWindSpeed), startInstant, night);
+            if (weatherData != null) placeWeatherData.put(place.name, weatherData);
+        }
+        return new ForecastPeriod(startInstant, end.atZone(ZONE).toInstant(), generalWeatherData, Map.copyOf(placeWeatherData));
+    }
+
+    /**
+     * Parses the child elements of a place or wind element. The reader must be positioned at the start of the element
+     * and is left at its end.
+     */
+    private Values parseValues(XMLStreamReader reader, Values values) throws XMLStreamException {
+        while (reader.nextTag() == START_ELEMENT) {
+            if (!values.read(reader)) skipElement(reader);
+        }
+        return values;
+    }
+
+    /**
+     * Forecast values of a period, place or wind element.
+     */
+    private static final class Values {
+        private String name;
+        private String phenomenon;
+        private Double tempMin;
+        private Double tempMax;
+        private Double speedMax;
+
+        /**
+         * Reads the value of the current element if it is a forecast value.
+         *
+         * @return false if the element is not a forecast value and was not read
+         */
+        boolean read(XMLStreamReader reader) throws XMLStreamException {
+            switch (reader.getLocalName()) {
+                case "name" -> name = reader.getElementText().trim();
+                case "phenomenon" -> phenomenon = reader.getElementText().trim();
+                case "tempmin" -> tempMin = parseNumber(reader.getElementText());
+                case "tempmax" -> tempMax = parseNumber(reader.getElementText());
+                case "speedmax" -> speedMax = parseNumber(reader.getElementText());
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return Weather data of the values, values missing from a place are taken from the forecast of the whole
+         * country. Null if there is no temperature.
+         */
+        WeatherData toWeatherData(String generalPhenomenon, WeatherData general, double windSpeed, Instant timestamp, boolean night) {
+            Double airTemp = night ? (tempMin != null ? tempMin : tempMax) : (tempMax != null ? tempMax : tempMin);
+            if (airTemp == null && general != null) airTemp = general.getAir_temp();
+            if (airTemp == null) return null;
+            WeatherData weatherData = new WeatherData();
+            weatherData.setName(name);
+            weatherData.setAir_temp(airTemp);
+            weatherData.setWind_speed(windSpeed);
+            weatherData.setWeather_phenomenon(phenomenon != null && !phenomenon.isEmpty() ? phenomenon
+                    : generalPhenomenon != null ? generalPhenomenon : "");
+            weatherData.setTimestamp(timestamp);
+            return weatherData;
+        }
+    }
+
+    /**
+     * @return Value of the element or null if it is missing or invalid
+     */
+    private static Double parseNumber(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Skips the rest of the current element without reading its content.
+     */
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == START_ELEMENT) depth++;
+            else if (event == END_ELEMENT) depth--;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * In-memory snapshot of the current weather conditions of every station.
+ * <p>
+ * Weather data changes only when new data is imported, so the latest weather data of each station is kept in an
+ * immutable map. New weather data is published by replacing the whole map at once, so readers never see
+ * a partially updated snapshot and never need to touch the database.
+ */
+@Component
+public class LatestWeatherCache {
+
+    private final AtomicReference<Map<String, WeatherData>> snapshot = new AtomicReference<>(Map.of());
+
+    /**
+     * Finds the latest weather data of a specific station from the snapshot.
+     *
+     * @param stationName Name of the station
+     * @return Latest weather data of the station or empty Optional if there is no weather data for the station
+     */
+    public Optional<WeatherData> get(String stationName) {
+        return Optional.ofNullable(snapshot.get().get(stationName));
+    }
+
+    /**
+     * @return Immutable map of the latest weather data of every station by station name
+     */
+    public Map<String, WeatherData> getAll() {
+        return snapshot.get();
+    }
+
+    /**
+     * Publishes new weather data into the snapshot.
+     * <p>
+     * Weather data of the stations that are not in the list is kept as it is. Older weather data never replaces
+     * newer weather data of the same station.
+     *
+     * @param weatherDataList Freshly imported weather data
+     */
+    public void publish(Collection<WeatherData> weatherDataList) {
+        snapshot.updateAndGet(current -> {
+            Map<String, WeatherData> updated = new HashMap<>(current);
+            for (WeatherData weatherData : weatherDataList) {
+                updated.merge(weatherData.getName(), weatherData,
+                        (previous, next) -> previous.compareTo(next) > 0 ? previous : next);
+            }
+            return Map.copyOf(updated);
+        });
+    }
+}
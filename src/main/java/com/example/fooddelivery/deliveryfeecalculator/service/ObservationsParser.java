@@ -0,0 +1,191 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Predicate;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+
+/**
+ * Streaming parser for the observations feed of the Estonian Environment Agency.
+ * <p>
+ * The feed is read element by element directly from the input stream, so the whole document is never held in memory.
+ * Stations that are not needed are skipped without reading their values and parsing stops as soon as all the needed
+ * stations are found.
+ * <p>
+ * Observation time of every station is the timestamp of the feed (seconds since the epoch in the timestamp attribute
+ * of the root element), not the time of the import.
+ */
+@Component
+public class ObservationsParser {
+    private final XMLInputFactory xmlInputFactory;
+
+    public ObservationsParser() {
+        xmlInputFactory = XMLInputFactory.newFactory();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Parses weather data of the given stations from the observations feed.
+     * <p>
+     * Stations with missing or invalid air temperature or wind speed are left out of the result.
+     *
+     * @param inputStream Observations feed
+     * @param stations    Names of the stations whose weather data is needed
+     * @return List containing weather data(WeatherData objects) of the found stations
+     * @throws XMLStreamException If the feed is not well-formed XML
+     */
+    public List<WeatherData> parse(InputStream inputStream, Set<String> stations) throws XMLStreamException {
+        return parse(inputStream, stations::contains, stations.size());
+    }
+
+    /**
+     * Parses weather data of every station from the observations feed.
+     * <p>
+     * Stations with missing or invalid air temperature or wind speed are left out of the result.
+     *
+     * @param inputStream Observations feed
+     * @return List containing weather data(WeatherData objects) of every station with complete weather data
+     * @throws XMLStreamException If the feed is not well-formed XML
+     */
+    public List<WeatherData> parseAll(InputStream inputStream) throws XMLStreamException {
+        return parse(inputStream, name -> true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parses weather data of the stations accepted by the filter until the given number of stations is found.
+     */
+    private List<WeatherData> parse(InputStream inputStream, Predicate<String> stations, int limit) throws XMLStreamException {
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        Set<String> found = new HashSet<>();
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+        try {
+            Instant timestamp = null;
+            while (found.size() < limit && reader.hasNext()) {
+                if (reader.next() != START_ELEMENT) continue;
+                if (timestamp == null) timestamp = parseTimestamp(reader);
+                if (reader.getLocalName().equals("station")) {
+                    WeatherData weatherData = parseStation(reader, stations, timestamp);
+                    if (weatherData != null && found.add(weatherData.getName())) weatherDataList.add(weatherData);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return weatherDataList;
+    }
+
+    /**
+     * Parses the observation time from the timestamp attribute of the root element.
+     * The reader must be positioned at the start of the root element.
+     *
+     * @return Observation time of the feed or the current time if the feed has no valid timestamp
+     */
+    private Instant parseTimestamp(XMLStreamReader reader) {
+        String timestamp = reader.getAttributeValue(null, "timestamp");
+        try {
+            if (timestamp != null) return Instant.ofEpochSecond(Long.parseLong(timestamp.trim()));
+        } catch (NumberFormatException ignored) {
+        }
+        return Instant.now();
+    }
+
+    /**
+     * Parses a single station element. The reader must be positioned at the start of the station element
+     * and is left at the end of the station element.
+     *
+     * @return Weather data of the station or null if the station is not needed or has no complete weather data
+     */
+    private WeatherData parseStation(XMLStreamReader reader, Predicate<String> stations, Instant timestamp) throws XMLStreamException {
+        String name = null;
+        String wmo = null;
+        String airTemp = null;
+        String windSpeed = null;
+        String phenomenon = null;
+        String latitude = null;
+        String longitude = null;
+
+        while (reader.nextTag() == START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "name":
+                    name = reader.getElementText();
+                    if (!stations.test(name)) {
+                        // Rest of the station element is skipped without reading its values
+                        skipElement(reader);
+                        return null;
+                    }
+                    break;
+                case "wmocode":
+                    wmo = reader.getElementText();
+                    break;
+                case "airtemperature":
+                    airTemp = reader.getElementText();
+                    break;
+                case "windspeed":
+                    windSpeed = reader.getElementText();
+                    break;
+                case "phenomenon":
+                    phenomenon = reader.getElementText();
+                    break;
+                case "latitude":
+                    latitude = reader.getElementText();
+                    break;
+                case "longitude":
+                    longitude = reader.getElementText();
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+
+        Double airTempValue = parseNumber(airTemp);
+        Double windSpeedValue = parseNumber(windSpeed);
+        if (name == null || airTempValue == null || windSpeedValue == null) return null;
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName(name);
+        weatherData.setWMO(wmo == null || wmo.isBlank() ? null : wmo);
+        weatherData.setAir_temp(airTempValue);
+        weatherData.setWind_speed(windSpeedValue);
+        weatherData.setWeather_phenomenon(phenomenon == null ? "" : phenomenon);
+        weatherData.setTimestamp(timestamp);
+        weatherData.setLatitude(parseNumber(latitude));
+        weatherData.setLongitude(parseNumber(longitude));
+        return weatherData;
+    }
+
+    /**
+     * @return Value of the element or null if it is missing or not a number. Stations without air temperature or
+     * wind speed are left out, stations without coordinates are still used.
+     */
+    private static Double parseNumber(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Skips the rest of the current element without reading its content.
+     */
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == START_ELEMENT) depth++;
+            else if (event == END_ELEMENT) depth--;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.repository.SchedulerLockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+
+/**
+ * Runs scheduled tasks on only one instance of the application, when several instances share the database.
+ * <p>
+ * Every instance fires the scheduled tasks at the same time, the first one to acquire the lease of the task in the
+ * database runs it and the others skip it. The lease expires after lock-at-most, so the task is not blocked forever
+ * if the instance running it dies. The lease is kept for at least lock-at-least after the task has started, so an
+ * instance whose clock is slightly behind does not run the same tick again after the task has completed.
+ */
+@Slf4j
+@Component
+public class SchedulerLock {
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final Duration lockAtMost;
+    private final Duration lockAtLeast;
+    private final String owner = hostName() + "/" + UUID.randomUUID(); // Identifier of this instance
+
+    @Autowired
+    public SchedulerLock(SchedulerLockRepository schedulerLockRepository,
+                         @Value("${app.cluster.lock-at-most}") Duration lockAtMost,
+                         @Value("${app.cluster.lock-at-least}") Duration lockAtLeast) {
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.lockAtMost = lockAtMost;
+        this.lockAtLeast = lockAtLeast;
+    }
+
+    /**
+     * Runs the task, unless another instance is running it or has run it less than lock-at-least ago.
+     *
+     * @param name Name of the task
+     * @param task Task to run
+     * @return true if the task was run by this instance
+     */
+    public boolean runExclusively(String name, Runnable task) {
+        return runExclusively(name, lockAtLeast, task);
+    }
+
+    /**
+     * Runs the task, unless another instance is running it or its lease has not expired yet. The lease is kept
+     * for the given time after the task has started, zero releases it as soon as the task has completed.
+     *
+     * @param name        Name of the task
+     * @param lockAtLeast Minimum time the lease is kept for
+     * @param task        Task to run
+     * @return true if the task was run by this instance
+     */
+    public boolean runExclusively(String name, Duration lockAtLeast, Runnable task) {
+        // Truncated to the precision of the database, the time identifies the lease when it is released
+        Instant lockedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        if (!schedulerLockRepository.tryLock(name, owner, lockedAt, lockedAt.plus(lockAtMost))) {
+            log.info("Task {} is run by another instance, skipping", name);
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        } finally {
+            // Truncated like the time of the acquisition, so the task can be run again right after a release without lock-at-least
+            Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+            Instant minimumLockUntil = lockedAt.plus(lockAtLeast);
+            schedulerLockRepository.unlock(name, owner, lockedAt, now.isAfter(minimumLockUntil) ? now : minimumLockUntil);
+        }
+    }
+
+    /**
+     * @return Identifier of this instance
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+/**
+ * What to do when the latest weather data of a city's station is older than the maximum age of weather data
+ * (e.g. when the weather portal has been unavailable for a while).
+ */
+public enum StaleDataPolicy {
+    /**
+     * Delivery fee is calculated from the latest weather data available, however old it is.
+     */
+    SERVE,
+    /**
+     * Delivery fee is not calculated, the request is rejected with an error message.
+     */
+    REJECT
+}
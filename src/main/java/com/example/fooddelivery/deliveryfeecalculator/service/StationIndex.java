@@ -0,0 +1,192 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Immutable spatial index of the latest weather data of the stations, for resolving the weather at the location of
+ * a delivery from the nearest stations.
+ * <p>
+ * The index is a balanced k-d tree stored in arrays, built once after every weather data import from the stations
+ * with coordinates. Coordinates are projected to kilometres on a plane tangent at the mean latitude of the stations,
+ * which is accurate to a fraction of a percent over a country the size of Estonia. A lookup visits a logarithmic
+ * number of stations, so it takes well under a microsecond even with every station of the feed in the index.
+ */
+public final class StationIndex {
+    /**
+     * Index without stations.
+     */
+    public static final StationIndex EMPTY = build(List.of());
+
+    private static final double KM_PER_DEGREE = 111.195; // Length of a degree of a great circle of the Earth
+    private static final double SAME_LOCATION_KM = 0.01; // Closer stations are used as they are, without interpolation
+
+    private final WeatherData[] stations; // Weather data of the stations in the order of the tree
+    private final double[] x; // Projected coordinates of the stations (km)
+    private final double[] y;
+    private final double longitudeScale; // Kilometres per degree of longitude at the mean latitude
+
+    private StationIndex(WeatherData[] stations, double[] x, double[] y, double longitudeScale) {
+        this.stations = stations;
+        this.x = x;
+        this.y = y;
+        this.longitudeScale = longitudeScale;
+    }
+
+    /**
+     * Builds the index of the stations. Weather data without coordinates is left out.
+     *
+     * @param weatherDataList Latest weather data of the stations
+     * @return Index of the stations with coordinates
+     */
+    public static StationIndex build(Collection<WeatherData> weatherDataList) {
+        List<WeatherData> located = new ArrayList<>();
+        double latitudeSum = 0;
+        for (WeatherData weatherData : weatherDataList) {
+            if (weatherData.getLatitude() == null || weatherData.getLongitude() == null) continue;
+            located.add(weatherData);
+            latitudeSum += weatherData.getLatitude();
+        }
+        double meanLatitude = located.isEmpty() ? 0 : latitudeSum / located.size();
+        double longitudeScale = KM_PER_DEGREE * Math.cos(Math.toRadians(meanLatitude));
+
+        WeatherData[] stations = located.toArray(new WeatherData[0]);
+        StationIndex index = new StationIndex(stations, new double[stations.length], new double[stations.length], longitudeScale);
+        index.buildTree(0, stations.length, 0);
+        for (int i = 0; i < stations.length; i++) {
+            index.x[i] = stations[i].getLongitude() * longitudeScale;
+            index.y[i] = stations[i].getLatitude() * KM_PER_DEGREE;
+        }
+        return index;
+    }
+
+    /**
+     * Sorts the stations of the subtree by the coordinate of its level, so the median is the root of the subtree
+     * and the lower and upper halves are its subtrees.
+     */
+    private void buildTree(int from, int to, int depth) {
+        if (to - from < 1) return;
+        Comparator<WeatherData> comparator = depth % 2 == 0
+                ? Comparator.comparingDouble(WeatherData::getLongitude)
+                : Comparator.comparingDouble(WeatherData::getLatitude);
+        Arrays.sort(stations, from, to, comparator);
+        int middle = (from + to) >>> 1;
+        buildTree(from, middle, depth + 1);
+        buildTree(middle + 1, to, depth + 1);
+    }
+
+    /**
+     * Finds the weather data of the station nearest to the given location.
+     *
+     * @param latitude      Latitude of the location (WGS84)
+     * @param longitude     Longitude of the location (WGS84)
+     * @param maxDistanceKm Maximum distance of the station from the location (km)
+     * @return Weather data of the nearest station, null if the index has no stations within the maximum distance
+     */
+    public WeatherData nearest(double latitude, double longitude, double maxDistanceKm) {
+        if (stations.length == 0) return null;
+        int[] found = {-1};
+        double[] distances = {maxDistanceKm * maxDistanceKm};
+        search(0, stations.length, 0, longitude * longitudeScale, latitude * KM_PER_DEGREE, found, distances);
+        return found[0] < 0 ? null : stations[found[0]];
+    }
+
+    /**
+     * Interpolates the weather at the given location from the nearest stations, weighted by the inverse of the squared
+     * distance. Air temperature and wind speed are interpolated, the weather phenomenon is the phenomenon of the nearest
+     * station, and the observation time is the oldest observation time of the stations used, so outdated weather data
+     * of any of them is detected. Name and WMO code are those of the nearest station, coordinates are the location.
+     * If the nearest station is at the location, its weather data is returned as it is. Stations farther than
+     * the maximum distance are not used.
+     *
+     * @param latitude      Latitude of the location (WGS84)
+     * @param longitude     Longitude of the location (WGS84)
+     * @param count         Number of the nearest stations to interpolate from
+     * @param maxDistanceKm Maximum distance of the stations from the location (km)
+     * @return Interpolated weather data, null if the index has no stations within the maximum distance
+     */
+    public WeatherData interpolate(double latitude, double longitude, int count, double maxDistanceKm) {
+        int k = Math.min(count, stations.length);
+        if (k == 0) return null;
+        int[] found = new int[k];
+        double[] distances = new double[k]; // Squared distances, ascending
+        Arrays.fill(found, -1);
+        Arrays.fill(distances, maxDistanceKm * maxDistanceKm);
+        search(0, stations.length, 0, longitude * longitudeScale, latitude * KM_PER_DEGREE, found, distances);
+        if (found[0] < 0) return null;
+        while (found[k - 1] < 0) k--; // Fewer stations within the maximum distance
+
+        WeatherData nearest = stations[found[0]];
+        if (k == 1 || distances[0] < SAME_LOCATION_KM * SAME_LOCATION_KM) return nearest;
+        double weightSum = 0;
+        double airTemp = 0;
+        double windSpeed = 0;
+        Instant oldest = nearest.getTimestamp();
+        for (int i = 0; i < k; i++) {
+            WeatherData station = stations[found[i]];
+            double weight = 1 / distances[i];
+            weightSum += weight;
+            airTemp += weight * station.getAir_temp();
+            windSpeed += weight * station.getWind_speed();
+            if (station.getTimestamp().isBefore(oldest)) oldest = station.getTimestamp();
+        }
+
+        WeatherData interpolated = new WeatherData();
+        interpolated.setName(nearest.getName());
+        interpolated.setWMO(nearest.getWMO());
+        interpolated.setAir_temp(airTemp / weightSum);
+        interpolated.setWind_speed(windSpeed / weightSum);
+        interpolated.setWeather_phenomenon(nearest.getWeather_phenomenon());
+        interpolated.setTimestamp(oldest);
+        interpolated.setLatitude(latitude);
+        interpolated.setLongitude(longitude);
+        return interpolated;
+    }
+
+    /**
+     * @return Number of stations in the index
+     */
+    public int size() {
+        return stations.length;
+    }
+
+    /**
+     * Searches the subtree for stations nearer than the found ones. The found stations are kept sorted by their
+     * squared distance, the last one is replaced by a nearer station. Initial distances of the slots that are not
+     * found yet are the maximum distance, so farther stations are never found and their subtrees are skipped.
+     */
+    private void search(int from, int to, int depth, double targetX, double targetY, int[] found, double[] distances) {
+        if (to - from < 1) return;
+        int middle = (from + to) >>> 1;
+        double dx = x[middle] - targetX;
+        double dy = y[middle] - targetY;
+        double distance = dx * dx + dy * dy;
+        int last = found.length - 1;
+        if (distance < distances[last]) {
+            int i = last;
+            for (; i > 0 && distances[i - 1] > distance; i--) {
+                distances[i] = distances[i - 1];
+                found[i] = found[i - 1];
+            }
+            distances[i] = distance;
+            found[i] = middle;
+        }
+
+        double split = depth % 2 == 0 ? dx : dy; // Positive if the target is in the lower half
+        boolean lowerFirst = split > 0;
+        if (lowerFirst) search(from, middle, depth + 1, targetX, targetY, found, distances);
+        else search(middle + 1, to, depth + 1, targetX, targetY, found, distances);
+        // The other half can only have nearer stations if the splitting line is nearer than the farthest found station
+        if (split * split < distances[last]) {
+            if (lowerFirst) search(middle + 1, to, depth + 1, targetX, targetY, found, distances);
+            else search(from, middle, depth + 1, targetX, targetY, found, distances);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+
+/**
+ * Non-blocking client of a feed of the weather portal of the Estonian Environment Agency, the observations feed
+ * or the forecast feed (see ForecastFeeService).
+ * <p>
+ * Every attempt is bounded by a timeout that covers both the response headers and the body, so a hanging
+ * endpoint can never block the import. Failed attempts (I/O errors, timeouts, 5xx and 429 responses) are retried
+ * with exponential backoff and full jitter. The feed is requested with a conditional GET using the ETag and
+ * Last-Modified validators of the previous response, so an unchanged feed is not downloaded again.
+ * <p>
+ * This bean is the client of the observations feed, the client of the forecast feed is defined in
+ * WeatherFeedConfiguration.
+ */
+@Slf4j
+@Primary
+@Component
+public class WeatherFeedClient {
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final Duration timeout;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private volatile Validators validators = new Validators(null, null); // Validators of the previous response
+
+    @Autowired
+    public WeatherFeedClient(@Value("${app.weather.url}") String url,
+                             @Value("${app.weather.fetch.connect-timeout}") Duration connectTimeout,
+                             @Value("${app.weather.fetch.timeout}") Duration timeout,
+                             @Value("${app.weather.fetch.max-attempts}") int maxAttempts,
+                             @Value("${app.weather.fetch.retry-backoff}") Duration retryBackoff) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.uri = URI.create(url);
+        this.timeout = timeout;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * Validators of a response, used for the conditional GET of the next request.
+     */
+    private record Validators(String etag, String lastModified) {
+    }
+
+    /**
+     * Thrown when the feed responds with an unexpected HTTP status.
+     */
+    public static class UnexpectedStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        public UnexpectedStatusException(int status) {
+            super("Unexpected HTTP status " + status);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Fetches the feed.
+     *
+     * @return Future of the body of the feed, or empty Optional if the feed has not changed since the previous fetch.
+     * Completes exceptionally if every attempt fails.
+     */
+    public CompletableFuture<Optional<byte[]>> fetch() {
+        return attempt(1);
+    }
+
+    /**
+     * Forgets the validators of the previous response, so the next fetch downloads the feed even if it has not changed
+     * (e.g. when the previous response could not be parsed or other stations are needed from the feed).
+     */
+    public void invalidate() {
+        validators = new Validators(null, null);
+    }
+
+    private CompletableFuture<Optional<byte[]>> attempt(int attempt) {
+        Validators current = validators;
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(timeout).GET();
+        if (current.etag() != null) request.header("If-None-Match", current.etag());
+        if (current.lastModified() != null) request.header("If-Modified-Since", current.lastModified());
+
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        return exchange.thenApply(this::handle)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((body, e) -> {
+                    if (e != null) exchange.cancel(true);
+                })
+                .handle((body, e) -> {
+                    if (e == null) return CompletableFuture.completedFuture(body);
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (attempt >= maxAttempts || !isRetryable(cause))
+                        return CompletableFuture.<Optional<byte[]>>failedFuture(cause);
+                    long delay = backoff(attempt);
+                    log.warn("Fetching {} failed (attempt {} of {}), retrying in {} ms: {}", uri, attempt, maxAttempts, delay, cause.toString());
+                    Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.supplyAsync(() -> attempt + 1, delayed).thenCompose(this::attempt);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private Optional<byte[]> handle(HttpResponse<byte[]> response) {
+        if (response.statusCode() == 304) return Optional.empty();
+        if (response.statusCode() != 200) throw new CompletionException(new UnexpectedStatusException(response.statusCode()));
+        validators = new Validators(response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null));
+        return Optional.of(response.body());
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof UnexpectedStatusException unexpectedStatus)
+            return unexpectedStatus.getStatus() >= 500 || unexpectedStatus.getStatus() == 429;
+        return e instanceof IOException || e instanceof TimeoutException;
+    }
+
+    /**
+     * @return Random delay in milliseconds between 0 and the retry backoff doubled after every attempt (full jitter)
+     */
+    private long backoff(int attempt) {
+        long max = retryBackoff.toMillis() << Math.min(attempt - 1, 10);
+        return ThreadLocalRandom.current().nextLong(max + 1);
+    }
+}
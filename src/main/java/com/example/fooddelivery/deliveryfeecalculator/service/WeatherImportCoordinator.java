@@ -0,0 +1,142 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.exception.WeatherFetchException;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.repository.SchedulerLockRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.OptionalInt;
+
+
+/**
+ * Coordinates the weather data imports of the instances of the application that share the database.
+ * <p>
+ * Scheduled imports are run by only one instance per tick, so the weather portal is fetched once no matter how many
+ * instances there are. Every completed import increments the version of the import in the SCHEDULER_LOCK table.
+ * The other instances poll the version and load the imported weather data from the database, so all instances serve
+ * delivery fees from the same weather data shortly after the import.
+ */
+@Slf4j
+@Component
+public class WeatherImportCoordinator {
+    static final String IMPORT_TASK = "weather-import";
+
+    private final DeliveryFeeCalculatorService deliveryFeeCalculatorService;
+    private final SchedulerLock schedulerLock;
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final WeatherDataRepository weatherDataRepository;
+    private final WeatherTimeline weatherTimeline;
+    private final LatestWeatherCache latestWeatherCache;
+    private final Duration timelineWindow;
+    private final Object importLock = new Object();
+    private long importVersion; // Version of the latest import whose weather data is published by this instance
+
+    @Autowired
+    public WeatherImportCoordinator(DeliveryFeeCalculatorService deliveryFeeCalculatorService, SchedulerLock schedulerLock,
+                                    SchedulerLockRepository schedulerLockRepository, WeatherDataRepository weatherDataRepository,
+                                    WeatherTimeline weatherTimeline, LatestWeatherCache latestWeatherCache,
+                                    @Value("${app.weather.timeline-window}") Duration timelineWindow) {
+        this.deliveryFeeCalculatorService = deliveryFeeCalculatorService;
+        this.schedulerLock = schedulerLock;
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.weatherDataRepository = weatherDataRepository;
+        this.weatherTimeline = weatherTimeline;
+        this.latestWeatherCache = latestWeatherCache;
+        this.timelineWindow = timelineWindow;
+    }
+
+    /**
+     * Weather data imported until now was loaded from the database at startup.
+     */
+    @PostConstruct
+    public synchronized void loadImportVersion() {
+        importVersion = schedulerLockRepository.getVersion(IMPORT_TASK);
+    }
+
+    /**
+     * Imports the latest weather data, unless another instance is importing it or has just imported it.
+     * A failed fetch is already logged, the previous weather data stays in use until the next scheduled import.
+     *
+     * @return true if the import was run by this instance
+     */
+    public boolean runScheduledImport() {
+        return schedulerLock.runExclusively(IMPORT_TASK, () -> {
+            try {
+                importWeatherData();
+            } catch (WeatherFetchException e) {
+                log.warn("Scheduled weather data import failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Imports the latest weather data requested with POST /, unless another instance is importing it or has just
+     * imported it (its weather data is published by the synchronization). Unlike a scheduled import, the lease is
+     * released as soon as the import completes, so the next scheduled import is not skipped because of it.
+     *
+     * @return Number of stations whose weather data was imported, empty if the import was run by another instance
+     * @throws WeatherFetchException If the weather data could not be fetched or parsed
+     */
+    public OptionalInt runRequestedImport() {
+        int[] imported = new int[1];
+        if (!schedulerLock.runExclusively(IMPORT_TASK, Duration.ZERO, () -> imported[0] = importWeatherData()))
+            return OptionalInt.empty();
+        return OptionalInt.of(imported[0]);
+    }
+
+    /**
+     * Imports the latest weather data on this instance and notifies the other instances if any weather data was imported.
+     * Imports of this instance (scheduled and requested) never run in parallel.
+     *
+     * @return Number of stations whose weather data was imported
+     * @throws WeatherFetchException If the weather data could not be fetched or parsed
+     */
+    public int importWeatherData() {
+        synchronized (importLock) {
+            int imported = deliveryFeeCalculatorService.saveWeatherData();
+            if (imported > 0) {
+                long version = schedulerLockRepository.incrementVersion(IMPORT_TASK);
+                synchronized (this) {
+                    // Versions between the previous and the new one are imports of other instances, which are older
+                    if (version > importVersion) importVersion = version;
+                }
+            }
+            return imported;
+        }
+    }
+
+    /**
+     * Publishes the weather data imported by other instances. Polls the version of the import, the frequency is
+     * configurable in application.properties file.
+     *
+     * @return true if new weather data was imported by another instance
+     */
+    @Scheduled(fixedDelayString = "${app.cluster.sync-rate}", initialDelayString = "${app.cluster.sync-rate}")
+    public synchronized boolean synchronize() {
+        long version = schedulerLockRepository.getVersion(IMPORT_TASK);
+        if (version == importVersion) return false;
+
+        // Weather data at the time of the latest weather data of this instance is read again, in case it was updated
+        Instant since = latestWeatherCache.getAll().values().stream()
+                .map(WeatherData::getTimestamp)
+                .max(Instant::compareTo)
+                .orElse(Instant.now().minus(timelineWindow));
+        List<WeatherData> weatherDataList = weatherDataRepository.findAllSince(since);
+        weatherTimeline.add(weatherDataList);
+        deliveryFeeCalculatorService.publishWeatherData(weatherDataList);
+        // Stations whose latest weather data is older than the timeline window
+        deliveryFeeCalculatorService.loadLatestWeatherData();
+        importVersion = version;
+        log.info("Published weather data of {} stations imported by another instance", weatherDataList.size());
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.ImportJob;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Runs the weather data imports requested with POST / as jobs on a single import thread, so requests return
+ * immediately and do not tie up request threads while the weather portal is fetched.
+ * <p>
+ * Imports are single-flight: a request made while a job is queued or running gets that job instead of a new one,
+ * so concurrent requests cause a single fetch. The states of the latest jobs are kept in memory for the status
+ * endpoint, the number is configurable in application.properties file.
+ */
+@Slf4j
+@Component
+public class WeatherImportJobs {
+    private final WeatherImportCoordinator weatherImportCoordinator;
+    private final DeliveryFeeMetrics deliveryFeeMetrics;
+    private final int history;
+    private final ExecutorService importer;
+    private final Map<Long, ImportJob> jobs = new LinkedHashMap<>(); // Latest jobs by id, in the order of the requests
+    private ImportJob active; // Queued or running job, null if there is none
+    private long lastId;
+
+    @Autowired
+    public WeatherImportJobs(WeatherImportCoordinator weatherImportCoordinator, DeliveryFeeMetrics deliveryFeeMetrics,
+                             @Value("${app.weather.import.job-history}") int history) {
+        this.weatherImportCoordinator = weatherImportCoordinator;
+        this.deliveryFeeMetrics = deliveryFeeMetrics;
+        this.history = history;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("weather-import-");
+        threadFactory.setDaemon(true);
+        this.importer = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    @PreDestroy
+    public void close() {
+        importer.shutdownNow();
+    }
+
+    /**
+     * Requests an import of the latest weather data.
+     *
+     * @return New queued job, or the job that is already queued or running
+     */
+    public synchronized ImportJob submit() {
+        if (active != null) return active;
+        ImportJob job = ImportJob.queued(++lastId, Instant.now());
+        update(job);
+        importer.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * @param id Id of the job
+     * @return Current state of the job, empty if there is no such job or it has been dropped from the history
+     */
+    public synchronized Optional<ImportJob> find(long id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(ImportJob job) {
+        long start = System.nanoTime();
+        ImportJob running = job.running(Instant.now());
+        update(running);
+        ImportJob finished = null;
+        try {
+            OptionalInt imported = weatherImportCoordinator.runRequestedImport();
+            finished = imported.isPresent()
+                    ? running.succeeded(Instant.now(), imported.getAsInt())
+                    : running.coalesced(Instant.now());
+        } catch (RuntimeException e) {
+            log.error("Weather import job {} failed", job.getId(), e);
+            finished = running.failed(Instant.now(), e.getMessage());
+        } finally {
+            // An error must not leave the job active, later requests would get the dead job instead of a new import
+            if (finished == null) finished = running.failed(Instant.now(), "Import failed with an unexpected error");
+            deliveryFeeMetrics.recordImportJob(finished.getStatus().name().toLowerCase(), System.nanoTime() - start);
+            update(finished);
+        }
+    }
+
+    private synchronized void update(ImportJob job) {
+        jobs.put(job.getId(), job);
+        active = job.isActive() ? job : null;
+        while (jobs.size() > history) jobs.remove(jobs.keySet().iterator().next());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.DailyWeather;
+import com.example.fooddelivery.deliveryfeecalculator.model.PhenomenonCategory;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.repository.DailyWeatherRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+
+/**
+ * Removes weather data that is older than the retention period (configurable in application.properties file).
+ * <p>
+ * Old weather data is processed one day at a time. If downsampling is enabled, weather data of the day is first
+ * compacted into daily aggregates of every station (DAILY_WEATHER table). Weather data is then deleted in bounded
+ * batches, each in its own short transaction, so the job never holds long locks on the weather data table.
+ * Days are calendar days in the time zone of the application.
+ */
+@Service
+public class WeatherRetentionService {
+    private final WeatherDataRepository weatherDataRepository;
+    private final DailyWeatherRepository dailyWeatherRepository;
+    private final SchedulerLock schedulerLock;
+    private final Duration retentionPeriod;
+    private final int batchSize;
+    private final boolean downsample;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    @Autowired
+    public WeatherRetentionService(WeatherDataRepository weatherDataRepository, DailyWeatherRepository dailyWeatherRepository, SchedulerLock schedulerLock,
+                                   @Value("${app.weather.retention.period}") Duration retentionPeriod,
+                                   @Value("${app.weather.retention.batch-size}") int batchSize,
+                                   @Value("${app.weather.retention.downsample}") boolean downsample) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.dailyWeatherRepository = dailyWeatherRepository;
+        this.schedulerLock = schedulerLock;
+        this.retentionPeriod = retentionPeriod;
+        this.batchSize = batchSize;
+        this.downsample = downsample;
+    }
+
+    /**
+     * Removes weather data that is older than the retention period.
+     * The frequency of the job is configurable in application.properties file.
+     * If several instances of the application share the database, the job is run by only one of them.
+     */
+    @Scheduled(cron = "${app.weather.retention.cron}")
+    public void removeOldWeatherData() {
+        schedulerLock.runExclusively("weather-retention", () -> removeWeatherDataBefore(Instant.now().minus(retentionPeriod)));
+    }
+
+    /**
+     * Removes weather data of every whole day that ended before the given time.
+     *
+     * @param cutoff Weather data of the days before the day of this time is removed
+     * @return Number of deleted weather data rows
+     */
+    public int removeWeatherDataBefore(Instant cutoff) {
+        Instant cutoffDay = LocalDate.ofInstant(cutoff, zone).atStartOfDay(zone).toInstant();
+        int deleted = 0;
+
+        Optional<WeatherData> oldest = weatherDataRepository.findOldest();
+        while (oldest.isPresent() && oldest.get().getTimestamp().isBefore(cutoffDay)) {
+            LocalDate day = LocalDate.ofInstant(oldest.get().getTimestamp(), zone);
+            Instant dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant();
+            if (downsample) downsample(day);
+
+            int batch;
+            do {
+                batch = weatherDataRepository.deleteObservedBefore(dayEnd, batchSize);
+                deleted += batch;
+            } while (batch == batchSize);
+            oldest = weatherDataRepository.findOldest();
+        }
+        return deleted;
+    }
+
+    /**
+     * Compacts the weather data of the given day into daily aggregates of every station.
+     * If the day already has an aggregate (e.g. the previous run was interrupted), the aggregates are combined.
+     *
+     * @param day Day to compact
+     */
+    private void downsample(LocalDate day) {
+        List<WeatherData> weatherDataList = weatherDataRepository.findAllBetween(day.atStartOfDay(zone).toInstant(),
+                day.plusDays(1).atStartOfDay(zone).toInstant());
+        Map<String, DailyWeather> aggregates = new HashMap<>();
+        for (WeatherData weatherData : weatherDataList) {
+            DailyWeather aggregate = aggregates.computeIfAbsent(weatherData.getName(), name ->
+                    dailyWeatherRepository.findByNameAndDate(name, day).orElseGet(() -> new DailyWeather(null, name, day,
+                            weatherData.getAir_temp(), weatherData.getAir_temp(), weatherData.getWind_speed(), weatherData.getWeather_phenomenon())));
+            aggregate.setMin_air_temp(Math.min(aggregate.getMin_air_temp(), weatherData.getAir_temp()));
+            aggregate.setMax_air_temp(Math.max(aggregate.getMax_air_temp(), weatherData.getAir_temp()));
+            aggregate.setMax_wind_speed(Math.max(aggregate.getMax_wind_speed(), weatherData.getWind_speed()));
+            if (severity(weatherData.getWeather_phenomenon()) > severity(aggregate.getWorst_phenomenon()))
+                aggregate.setWorst_phenomenon(weatherData.getWeather_phenomenon());
+        }
+        dailyWeatherRepository.saveAll(aggregates.values());
+    }
+
+    /**
+     * Ranks weather phenomenons by their effect on delivery fees.
+     *
+     * @param phenomenon Weather phenomenon
+     * @return 3 if the usage of bikes and scooters is forbidden, 2 for snow or sleet, 1 for rain and 0 otherwise
+     */
+    private int severity(String phenomenon) {
+        switch (PhenomenonCategory.classify(phenomenon)) {
+            case GLAZE, HAIL, THUNDER:
+                return 3;
+            case SNOW, SLEET:
+                return 2;
+            case RAIN:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+}
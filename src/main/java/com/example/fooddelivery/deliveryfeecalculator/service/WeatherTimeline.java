@@ -0,0 +1,368 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.PhenomenonCategory;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * In-memory timeline of the recent weather data of every station.
+ * <p>
+ * Weather data of the recent window (configurable in application.properties file) is stored in columns of primitive
+ * values per station: observation times (epoch milliseconds), air temperatures and wind speeds (float) and codes of
+ * the weather phenomena (byte), in chunks of a fixed number of observations that are added as the timeline grows and
+ * dropped as a whole when they leave the window. An observation takes 17 bytes, so weeks of the weather data of every
+ * station take a few megabytes of heap, and the weather data at a specific time is found with a binary search without
+ * touching the database. WeatherData objects are only created for the observations that are returned.
+ * Older weather data is looked up from the database with an indexed query.
+ * <p>
+ * The values of the feed have one decimal. Floats keep them to three decimals, so they are rounded to three decimals
+ * when read. Phenomena are stored as codes of a dictionary of the distinct phenomena; if the dictionary is full,
+ * a new phenomenon is stored as the keyword of its category, which is classified the same way. Every phenomenon is
+ * classified once when it is added to the dictionary, not when it is read. Stations do not move,
+ * so only the latest coordinates of every station are kept.
+ */
+@Component
+public class WeatherTimeline {
+    static final int CHUNK_SIZE = 1024; // Observations per chunk, about six weeks of hourly observations
+    private static final int MAX_PHENOMENA = 256; // Codes that fit in a byte
+
+    private final WeatherDataRepository weatherDataRepository;
+    private final Duration window;
+    private final Map<String, Series> timelines = new ConcurrentHashMap<>();
+    private final Map<String, Integer> phenomenonCodes = new HashMap<>(); // Guarded by itself
+    private volatile Phenomenon[] phenomena = {new Phenomenon(null, PhenomenonCategory.classify(null))}; // Phenomena by code, code 0 is no phenomenon
+
+    /**
+     * Phenomenon of the dictionary and its category.
+     */
+    private record Phenomenon(String name, PhenomenonCategory category) {
+    }
+
+    @Autowired
+    public WeatherTimeline(WeatherDataRepository weatherDataRepository, @Value("${app.weather.timeline-window}") Duration window) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.window = window;
+        // Keywords of the categories always have a code, they are stored instead of new phenomena if the dictionary is full
+        for (PhenomenonCategory category : PhenomenonCategory.values()) {
+            if (category.getKeyword() != null) encode(category.getKeyword());
+        }
+    }
+
+    /**
+     * Loads the weather data of the recent window from the database.
+     */
+    @PostConstruct
+    public void load() {
+        add(weatherDataRepository.findAllSince(Instant.now().minus(window)));
+    }
+
+    /**
+     * Adds freshly imported weather data to the timeline and removes weather data that is older than the recent window.
+     * Weather data of a station that is already in the timeline at the same time is replaced.
+     *
+     * @param weatherDataList Freshly imported weather data
+     */
+    public void add(Collection<WeatherData> weatherDataList) {
+        long start = Instant.now().minus(window).toEpochMilli();
+        for (WeatherData weatherData : weatherDataList) {
+            long timestamp = weatherData.getTimestamp().toEpochMilli();
+            if (timestamp < start) continue; // Would be removed right away
+            timelines.computeIfAbsent(weatherData.getName(), Series::new)
+                    .put(timestamp, weatherData, encode(weatherData.getWeather_phenomenon()));
+        }
+        for (Series series : timelines.values()) series.removeBefore(start);
+    }
+
+    /**
+     * Finds the latest weather data of a specific station that was observed at or before the given time.
+     * <p>
+     * Every observation newer than the oldest observation in the timeline is in the timeline, so if an observation
+     * at or before the given time is found from the timeline, it is the correct one. Otherwise, the database is queried.
+     *
+     * @param stationName Name of the station
+     * @param timestamp   Time of interest
+     * @return Weather data of the station at the given time or empty Optional if station has no older weather data
+     */
+    public Optional<WeatherData> findAt(String stationName, Instant timestamp) {
+        Series series = timelines.get(stationName);
+        if (series != null) {
+            WeatherData weatherData = series.findAt(timestamp.toEpochMilli());
+            if (weatherData != null) return Optional.of(weatherData);
+        }
+        return weatherDataRepository.findLatestByNameAt(stationName, timestamp);
+    }
+
+    /**
+     * Finds the latest weather data of a specific station in the timeline. The database is not queried.
+     *
+     * @param stationName Name of the station
+     * @return Latest weather data of the station or empty Optional if the station has no weather data in the recent window
+     */
+    public Optional<WeatherData> findLatest(String stationName) {
+        Series series = timelines.get(stationName);
+        return series == null ? Optional.empty() : Optional.ofNullable(series.findAt(Long.MAX_VALUE));
+    }
+
+    /**
+     * Finds the weather data of a specific station that was observed in the given period. If the period starts before
+     * the oldest observation of the station in the timeline, the database is queried.
+     *
+     * @param stationName Name of the station
+     * @param from        Start of the period (inclusive)
+     * @param to          End of the period (exclusive)
+     * @return Weather data of the station observed in the given period, oldest first
+     */
+    public List<WeatherData> findBetween(String stationName, Instant from, Instant to) {
+        Series series = timelines.get(stationName);
+        if (series != null) {
+            List<WeatherData> weatherDataList = series.findBetween(from.toEpochMilli(), to.toEpochMilli());
+            if (weatherDataList != null) return weatherDataList;
+        }
+        return weatherDataRepository.findByNameBetween(stationName, from, to);
+    }
+
+    /**
+     * @return Names of the stations that have weather data in the timeline
+     */
+    public Set<String> getStations() {
+        return Set.copyOf(timelines.keySet());
+    }
+
+    /**
+     * @return Number of observations in the timeline
+     */
+    public int size() {
+        int size = 0;
+        for (Series series : timelines.values()) size += series.size();
+        return size;
+    }
+
+    private int encode(String phenomenon) {
+        if (phenomenon == null) return 0;
+        synchronized (phenomenonCodes) {
+            Integer code = phenomenonCodes.get(phenomenon);
+            if (code != null) return code;
+            Phenomenon[] current = phenomena;
+            if (current.length == MAX_PHENOMENA) {
+                String keyword = PhenomenonCategory.classify(phenomenon).getKeyword();
+                return keyword == null ? 0 : phenomenonCodes.get(keyword);
+            }
+            Phenomenon[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = new Phenomenon(phenomenon, PhenomenonCategory.classify(phenomenon));
+            phenomena = extended; // Published before any observation with the new code
+            phenomenonCodes.put(phenomenon, current.length);
+            return current.length;
+        }
+    }
+
+    private static float encodeValue(double value) {
+        return (float) value;
+    }
+
+    private static double decodeValue(float value) {
+        return Math.rint(value * 1000d) / 1000d;
+    }
+
+    /**
+     * Observations of a station, sorted by the observation time, in chunks of CHUNK_SIZE observations.
+     */
+    private final class Series {
+        private final String name;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final List<Chunk> chunks = new ArrayList<>();
+        private String wmo; // WMO code of the latest added observation
+        private Double latitude; // Coordinates of the latest added observation with coordinates
+        private Double longitude;
+
+        private Series(String name) {
+            this.name = name;
+        }
+
+        void put(long timestamp, WeatherData weatherData, int phenomenon) {
+            lock.writeLock().lock();
+            try {
+                if (weatherData.getWMO() != null) wmo = weatherData.getWMO();
+                if (weatherData.getLatitude() != null && weatherData.getLongitude() != null) {
+                    latitude = weatherData.getLatitude();
+                    longitude = weatherData.getLongitude();
+                }
+                Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+                if (last == null || timestamp > last.timestamps[last.size - 1]) { // Usual case, a new observation
+                    if (last == null || last.size == CHUNK_SIZE) chunks.add(last = new Chunk());
+                    last.set(last.size++, timestamp, weatherData, phenomenon);
+                    return;
+                }
+                int chunkIndex = Math.max(floorChunk(timestamp), 0);
+                Chunk chunk = chunks.get(chunkIndex);
+                int index = Arrays.binarySearch(chunk.timestamps, 0, chunk.size, timestamp);
+                if (index >= 0) {
+                    chunk.set(index, timestamp, weatherData, phenomenon);
+                    return;
+                }
+                index = -index - 1;
+                if (chunk.size == CHUNK_SIZE) {
+                    Chunk upper = chunk.split();
+                    chunks.add(chunkIndex + 1, upper);
+                    if (index > chunk.size) {
+                        index -= chunk.size;
+                        chunk = upper;
+                    }
+                }
+                chunk.insert(index, timestamp, weatherData, phenomenon);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeBefore(long start) {
+            lock.writeLock().lock();
+            try {
+                // Whole chunks only, the timeline must stay a continuous part of the history
+                while (!chunks.isEmpty() && chunks.get(0).timestamps[chunks.get(0).size - 1] < start) chunks.remove(0);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return Latest observation at or before the given time, null if the timeline has no such observation
+         */
+        WeatherData findAt(long timestamp) {
+            lock.readLock().lock();
+            try {
+                int chunkIndex = floorChunk(timestamp);
+                if (chunkIndex < 0) return null;
+                Chunk chunk = chunks.get(chunkIndex);
+                int index = Arrays.binarySearch(chunk.timestamps, 0, chunk.size, timestamp);
+                return weatherData(chunk, index >= 0 ? index : -index - 2);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return Observations of the period, null if the period starts before the oldest observation in the timeline
+         */
+        List<WeatherData> findBetween(long from, long to) {
+            lock.readLock().lock();
+            try {
+                int chunkIndex = floorChunk(from);
+                if (chunkIndex < 0) return null;
+                List<WeatherData> weatherDataList = new ArrayList<>();
+                int index = Arrays.binarySearch(chunks.get(chunkIndex).timestamps, 0, chunks.get(chunkIndex).size, from);
+                if (index < 0) index = -index - 1;
+                for (; chunkIndex < chunks.size(); chunkIndex++, index = 0) {
+                    Chunk chunk = chunks.get(chunkIndex);
+                    for (; index < chunk.size; index++) {
+                        if (chunk.timestamps[index] >= to) return weatherDataList;
+                        weatherDataList.add(weatherData(chunk, index));
+                    }
+                }
+                return weatherDataList;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                int size = 0;
+                for (Chunk chunk : chunks) size += chunk.size;
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return Index of the last chunk that starts at or before the given time, -1 if there is none
+         */
+        private int floorChunk(long timestamp) {
+            int low = 0;
+            int high = chunks.size() - 1;
+            int found = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (chunks.get(middle).timestamps[0] <= timestamp) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return found;
+        }
+
+        private WeatherData weatherData(Chunk chunk, int index) {
+            WeatherData weatherData = new WeatherData();
+            weatherData.setName(name);
+            weatherData.setWMO(wmo);
+            weatherData.setAir_temp(decodeValue(chunk.airTemperatures[index]));
+            weatherData.setWind_speed(decodeValue(chunk.windSpeeds[index]));
+            Phenomenon phenomenon = phenomena[chunk.phenomena[index] & 0xFF];
+            weatherData.setWeather_phenomenon(phenomenon.name(), phenomenon.category());
+            weatherData.setTimestamp(Instant.ofEpochMilli(chunk.timestamps[index]));
+            weatherData.setLatitude(latitude);
+            weatherData.setLongitude(longitude);
+            return weatherData;
+        }
+    }
+
+    /**
+     * Columns of up to CHUNK_SIZE observations, sorted by the observation time.
+     */
+    private static final class Chunk {
+        private final long[] timestamps = new long[CHUNK_SIZE]; // Epoch milliseconds
+        private final float[] airTemperatures = new float[CHUNK_SIZE];
+        private final float[] windSpeeds = new float[CHUNK_SIZE];
+        private final byte[] phenomena = new byte[CHUNK_SIZE];
+        private int size;
+
+        void set(int index, long timestamp, WeatherData weatherData, int phenomenon) {
+            timestamps[index] = timestamp;
+            airTemperatures[index] = encodeValue(weatherData.getAir_temp());
+            windSpeeds[index] = encodeValue(weatherData.getWind_speed());
+            phenomena[index] = (byte) phenomenon;
+        }
+
+        void insert(int index, long timestamp, WeatherData weatherData, int phenomenon) {
+            int moved = size - index;
+            System.arraycopy(timestamps, index, timestamps, index + 1, moved);
+            System.arraycopy(airTemperatures, index, airTemperatures, index + 1, moved);
+            System.arraycopy(windSpeeds, index, windSpeeds, index + 1, moved);
+            System.arraycopy(phenomena, index, phenomena, index + 1, moved);
+            size++;
+            set(index, timestamp, weatherData, phenomenon);
+        }
+
+        /**
+         * Moves the upper half of the observations to a new chunk.
+         *
+         * @return New chunk with the upper half of the observations
+         */
+        Chunk split() {
+            Chunk upper = new Chunk();
+            int half = size / 2;
+            upper.size = size - half;
+            System.arraycopy(timestamps, half, upper.timestamps, 0, upper.size);
+            System.arraycopy(airTemperatures, half, upper.airTemperatures, 0, upper.size);
+            System.arraycopy(windSpeeds, half, upper.windSpeeds, 0, upper.size);
+            System.arraycopy(phenomena, half, upper.phenomena, 0, upper.size);
+            size = half;
+            return upper;
+        }
+    }
+}
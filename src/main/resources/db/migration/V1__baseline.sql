@@ -0,0 +1,39 @@
+-- Schema as it was created by schema.sql and data.sql before the schema was managed by migrations
+
+create table WEATHER_DATA(
+    id long auto_increment,
+    name varchar(50),
+    WMO varchar(5),
+    air_temp double,
+    wind_speed double,
+    weather_phenomenon varchar(255),
+    timestamp datetime
+);
+
+-- Latest weather data lookups are done per station ordered by timestamp
+create index WEATHER_DATA_NAME_TIMESTAMP_IDX on WEATHER_DATA(name, timestamp);
+
+create table CITY(
+    id long auto_increment primary key,
+    name varchar(50) not null unique,
+    station varchar(50) not null,
+    car_fee double,
+    scooter_fee double,
+    bike_fee double
+);
+
+create table DAILY_WEATHER(
+    id long auto_increment primary key,
+    name varchar(50) not null,
+    date date not null,
+    min_air_temp double,
+    max_air_temp double,
+    max_wind_speed double,
+    worst_phenomenon varchar(255),
+    unique (name, date)
+);
+
+-- Cities, their weather stations and regional base fees (RBF)
+insert into CITY(name, station, car_fee, scooter_fee, bike_fee) values ('Tallinn', 'Tallinn-Harku', 4, 3.5, 3);
+insert into CITY(name, station, car_fee, scooter_fee, bike_fee) values ('Tartu', 'Tartu-Tõravere', 3.5, 3, 2.5);
+insert into CITY(name, station, car_fee, scooter_fee, bike_fee) values ('Pärnu', 'Pärnu', 3, 2.5, 2);
@@ -0,0 +1,18 @@
+-- Weather data is identified by its id
+alter table WEATHER_DATA alter column id set not null;
+alter table WEATHER_DATA add constraint WEATHER_DATA_PK primary key (id);
+
+-- Timestamp is the observation time of the feed, stored as an instant
+alter table WEATHER_DATA alter column timestamp set data type timestamp with time zone;
+
+-- Stations without a WMO code have null instead of an empty WMO code
+update WEATHER_DATA set WMO = null where WMO = '';
+
+-- Every observation of a station is stored only once, so repeated imports do not create duplicates
+delete from WEATHER_DATA w
+where exists (select 1 from WEATHER_DATA d
+              where d.name = w.name and d.timestamp = w.timestamp and d.id < w.id);
+alter table WEATHER_DATA add constraint WEATHER_DATA_WMO_TIMESTAMP_UK unique (WMO, timestamp);
+-- Stations without a WMO code are identified by name, the lookup index of latest weather data becomes unique
+drop index WEATHER_DATA_NAME_TIMESTAMP_IDX;
+create unique index WEATHER_DATA_NAME_TIMESTAMP_UK on WEATHER_DATA(name, timestamp);
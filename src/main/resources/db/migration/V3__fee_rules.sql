@@ -0,0 +1,37 @@
+-- Business rules of the extra fees, so tariffs can be changed without a deploy
+create table FEE_RULE(
+    id long auto_increment primary key,
+    component varchar(4) not null,
+    vehicle varchar(20) not null,
+    min_value double,
+    min_inclusive boolean default false not null,
+    max_value double,
+    max_inclusive boolean default false not null,
+    phenomenon varchar(20),
+    fee double default 0 not null,
+    forbidden boolean default false not null
+);
+
+-- Air temperature extra fee (ATEF): below -10 °C 1 €, from -10 °C to 0 °C 0.5 €
+insert into FEE_RULE(component, vehicle, max_value, max_inclusive, fee) values ('ATEF', 'scooter', -10, false, 1);
+insert into FEE_RULE(component, vehicle, min_value, min_inclusive, max_value, max_inclusive, fee) values ('ATEF', 'scooter', -10, true, 0, true, 0.5);
+insert into FEE_RULE(component, vehicle, max_value, max_inclusive, fee) values ('ATEF', 'bike', -10, false, 1);
+insert into FEE_RULE(component, vehicle, min_value, min_inclusive, max_value, max_inclusive, fee) values ('ATEF', 'bike', -10, true, 0, true, 0.5);
+
+-- Wind speed extra fee (WSEF): from 10 m/s to 20 m/s 0.5 €, above 20 m/s usage of the vehicle is forbidden
+insert into FEE_RULE(component, vehicle, min_value, min_inclusive, max_value, max_inclusive, fee) values ('WSEF', 'bike', 10, true, 20, true, 0.5);
+insert into FEE_RULE(component, vehicle, min_value, min_inclusive, forbidden) values ('WSEF', 'bike', 20, false, true);
+
+-- Weather phenomenon extra fee (WPEF): snow or sleet 1 €, rain 0.5 €, glaze, hail or thunder usage of the vehicle is forbidden
+insert into FEE_RULE(component, vehicle, phenomenon, fee) values ('WPEF', 'scooter', 'SNOW', 1);
+insert into FEE_RULE(component, vehicle, phenomenon, fee) values ('WPEF', 'scooter', 'SLEET', 1);
+insert into FEE_RULE(component, vehicle, phenomenon, fee) values ('WPEF', 'scooter', 'RAIN', 0.5);
+insert into FEE_RULE(component, vehicle, phenomenon, forbidden) values ('WPEF', 'scooter', 'GLAZE', true);
+insert into FEE_RULE(component, vehicle, phenomenon, forbidden) values ('WPEF', 'scooter', 'HAIL', true);
+insert into FEE_RULE(component, vehicle, phenomenon, forbidden) values ('WPEF', 'scooter', 'THUNDER', true);
+insert into FEE_RULE(component, vehicle, phenomenon, fee) values ('WPEF', 'bike', 'SNOW', 1);
+insert into FEE_RULE(component, vehicle, phenomenon, fee) values ('WPEF', 'bike', 'SLEET', 1);
+insert into FEE_RULE(component, vehicle, phenomenon, fee) values ('WPEF', 'bike', 'RAIN', 0.5);
+insert into FEE_RULE(component, vehicle, phenomenon, forbidden) values ('WPEF', 'bike', 'GLAZE', true);
+insert into FEE_RULE(component, vehicle, phenomenon, forbidden) values ('WPEF', 'bike', 'HAIL', true);
+insert into FEE_RULE(component, vehicle, phenomenon, forbidden) values ('WPEF', 'bike', 'THUNDER', true);
@@ -0,0 +1,13 @@
+-- Weather phenomenon is classified once at import, so delivery fees are calculated without reading the phenomenon text
+alter table WEATHER_DATA add column phenomenon_category varchar(20) default 'OTHER' not null;
+
+-- Weather data imported before is classified by the keywords of the phenomenon, in the same order of precedence
+update WEATHER_DATA set phenomenon_category = case
+    when lower(weather_phenomenon) like '%snow%' then 'SNOW'
+    when lower(weather_phenomenon) like '%sleet%' then 'SLEET'
+    when lower(weather_phenomenon) like '%rain%' then 'RAIN'
+    when lower(weather_phenomenon) like '%glaze%' then 'GLAZE'
+    when lower(weather_phenomenon) like '%hail%' then 'HAIL'
+    when lower(weather_phenomenon) like '%thunder%' then 'THUNDER'
+    else 'OTHER'
+end;
@@ -0,0 +1,9 @@
+-- Leases of the scheduled tasks, so only one instance of the application runs a task at a time,
+-- and the version of the latest completed run, so the other instances notice its results
+create table SCHEDULER_LOCK(
+    name varchar(64) primary key,
+    lock_until timestamp with time zone not null,
+    locked_at timestamp with time zone not null,
+    locked_by varchar(255) not null,
+    version bigint default 0 not null
+);
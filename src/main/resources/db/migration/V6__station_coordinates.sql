@@ -0,0 +1,3 @@
+-- Coordinates of the station (WGS84) from the feed, for resolving the weather of a delivery from the nearest stations
+alter table WEATHER_DATA add column latitude double;
+alter table WEATHER_DATA add column longitude double;
@@ -0,0 +1,7 @@
+-- Latest forecast feed imported by any instance of the application, so the other instances load the forecast
+-- from the database instead of fetching it themselves
+create table WEATHER_FORECAST(
+    id int primary key,
+    imported_at timestamp with time zone not null,
+    feed blob not null
+);
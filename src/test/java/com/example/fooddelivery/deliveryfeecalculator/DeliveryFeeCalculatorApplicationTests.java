@@ -3,7 +3,7 @@ package com.example.fooddelivery.deliveryfeecalculator;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "app.weather.forecast.import-on-startup=false")
 class DeliveryFeeCalculatorApplicationTests {
 
 	@Test
@@ -0,0 +1,57 @@
+package com.example.fooddelivery.deliveryfeecalculator.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsConfigurationTest {
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(VirtualThreadsConfiguration.class);
+
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    /**
+     * Test that the platform thread pools are used unless virtual threads are enabled
+     */
+    @Test
+    void disabledByDefault() {
+        contextRunner.run(context -> {
+            assertFalse(context.containsBean("virtualThreadsProtocolHandlerCustomizer"));
+            assertFalse(context.containsBean("taskScheduler"));
+        });
+    }
+
+    /**
+     * Test that tasks run on virtual threads on Java 21 or newer and enabling the mode fails on older Java versions
+     */
+    @Test
+    void enabled() throws Exception {
+        if (Runtime.version().feature() < 21) {
+            assertThrows(IllegalStateException.class, VirtualThreadsConfiguration::newVirtualThreadPerTaskExecutor);
+            contextRunner.withPropertyValues("app.virtual-threads.enabled=true")
+                    .run(context -> assertNotNull(context.getStartupFailure()));
+            return;
+        }
+
+        ExecutorService executor = VirtualThreadsConfiguration.newVirtualThreadPerTaskExecutor();
+        assertTrue(executor.submit(() -> isVirtual(Thread.currentThread())).get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        Thread thread = VirtualThreadsConfiguration.newVirtualThreadFactory("test-").newThread(() -> {
+        });
+        assertTrue(isVirtual(thread));
+        assertEquals("test-0", thread.getName());
+
+        contextRunner.withPropertyValues("app.virtual-threads.enabled=true").run(context -> {
+            assertNotNull(context.getBean(TomcatProtocolHandlerCustomizer.class));
+            assertNotNull(context.getBean(TaskScheduler.class));
+        });
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.fooddelivery.deliveryfeecalculator.controller;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeBreakdown;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.ImportJob;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.service.DeliveryFeeCalculatorService;
+import com.example.fooddelivery.deliveryfeecalculator.service.FeeStreamBroadcaster;
+import com.example.fooddelivery.deliveryfeecalculator.service.ForecastFeeService;
+import com.example.fooddelivery.deliveryfeecalculator.service.WeatherImportCoordinator;
+import com.example.fooddelivery.deliveryfeecalculator.service.WeatherImportJobs;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.CacheControl;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(DeliveryFeeCalculatorController.class)
+@Import(ResponseCachePolicy.class)
+class DeliveryFeeCalculatorControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private DeliveryFeeCalculatorService deliveryFeeCalculatorService;
+
+    @MockBean
+    private FeeStreamBroadcaster feeStreamBroadcaster;
+
+    @MockBean
+    private WeatherImportCoordinator weatherImportCoordinator;
+
+    @MockBean
+    private WeatherImportJobs weatherImportJobs;
+
+    @MockBean
+    private ForecastFeeService forecastFeeService;
+
+    /**
+     * Test that a requested import returns 202 with the job and its status URL, and the status can be looked up
+     */
+    @Test
+    void importIsAccepted() throws Exception {
+        Instant requested = Instant.parse("2023-03-01T12:00:00Z");
+        ImportJob job = ImportJob.queued(7, requested);
+        when(weatherImportJobs.submit()).thenReturn(job);
+        when(weatherImportJobs.find(7)).thenReturn(Optional.of(job.running(requested).succeeded(requested.plusMillis(1500), 3)));
+
+        mockMvc.perform(post("/"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/weather/import/7"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+        mockMvc.perform(get("/weather/import/7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("SUCCEEDED"))
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.durationMillis").value(1500));
+        mockMvc.perform(get("/weather/import/8"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Test that the latest delivery fee is returned with an ETag and Cache-Control
+     * and a request with a matching If-None-Match header gets a 304 response
+     */
+    @Test
+    void latestFeeIsCacheable() throws Exception {
+        when(deliveryFeeCalculatorService.getSnapshotVersion()).thenReturn("v1");
+        when(deliveryFeeCalculatorService.quote("tallinn", "bike")).thenReturn(FeeResult.success(new FeeBreakdown("Tallinn", "bike", 3, 0.5, 0, 0.5)));
+
+        mockMvc.perform(get("/fee/tallinn/bike"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
+                .andExpect(header().string("Cache-Control", startsWith("max-age=")))
+                .andExpect(content().string("4.0"));
+        mockMvc.perform(get("/fee/tallinn/bike").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        when(deliveryFeeCalculatorService.getSnapshotVersion()).thenReturn("v2");
+        mockMvc.perform(get("/fee/tallinn/bike").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v2\""));
+    }
+
+    /**
+     * Test that errors and delivery fees at a given time are not cached
+     */
+    @Test
+    void errorsAndHistoricalFeesAreNotCacheable() throws Exception {
+        Instant at = Instant.parse("2023-03-01T12:00:00Z");
+        when(deliveryFeeCalculatorService.getSnapshotVersion()).thenReturn("v1");
+        when(deliveryFeeCalculatorService.quote("tallinn", "bike", at)).thenReturn(FeeResult.success(new FeeBreakdown("Tallinn", "bike", 3, 0, 0, 0.5)));
+        when(deliveryFeeCalculatorService.quote("tallinn", "bike")).thenReturn(FeeResult.rejected(FeeResult.Outcome.STALE, "Weather data of station Tallinn-Harku is outdated"));
+
+        mockMvc.perform(get("/fee/tallinn/bike?at=" + at))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(content().string("3.5"));
+        mockMvc.perform(get("/fee/tallinn/bike").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(jsonPath("$.message").value("Weather data of station Tallinn-Harku is outdated"));
+    }
+
+    /**
+     * Test that the delivery fee of a scheduled delivery is looked up from the forecast and is not cached,
+     * and the time of a scheduled delivery can not be combined with the time of delivery
+     */
+    @Test
+    void scheduledDeliveryFee() throws Exception {
+        Instant deliverAt = Instant.parse("2023-03-02T09:30:00Z");
+        when(deliveryFeeCalculatorService.getSnapshotVersion()).thenReturn("v1");
+        when(forecastFeeService.quote("tallinn", "bike", deliverAt)).thenReturn(FeeResult.success(new FeeBreakdown("Tallinn", "bike", 3, 0.5, 0, 0)));
+
+        mockMvc.perform(get("/fee/tallinn/bike?deliverAt=" + deliverAt))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(content().string("3.5"));
+        mockMvc.perform(get("/fee/tallinn/bike?deliverAt=" + deliverAt + "&at=" + deliverAt))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test that the breakdown of the delivery fee is returned with the outcome and forbidden vehicles are rejected
+     * with the reason
+     */
+    @Test
+    void feeBreakdown() throws Exception {
+        when(deliveryFeeCalculatorService.getSnapshotVersion()).thenReturn("v1");
+        when(deliveryFeeCalculatorService.quote("tallinn", "scooter")).thenReturn(FeeResult.success(new FeeBreakdown("Tallinn", "scooter", 3.5, 1, 0, 1)));
+        when(deliveryFeeCalculatorService.quote("tallinn", "bike")).thenReturn(FeeResult.FORBIDDEN);
+
+        mockMvc.perform(get("/fee/tallinn/scooter/breakdown"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
+                .andExpect(jsonPath("$.outcome").value("SUCCESS"))
+                .andExpect(jsonPath("$.breakdown.atef").value(1.0))
+                .andExpect(jsonPath("$.breakdown.total").value(5.5));
+        mockMvc.perform(get("/fee/tallinn/bike/breakdown"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.outcome").value("FORBIDDEN"))
+                .andExpect(jsonPath("$.reason").value("Usage of selected vehicle type is forbidden"));
+        mockMvc.perform(get("/fee/tallinn/bike"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Usage of selected vehicle type is forbidden"));
+    }
+
+    /**
+     * Test that the latest weather data is returned with an ETag and revalidated with If-None-Match
+     */
+    @Test
+    void latestWeatherDataIsCacheable() throws Exception {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName("Tartu-Tõravere");
+        when(deliveryFeeCalculatorService.getSnapshotVersion()).thenReturn("v1");
+        when(deliveryFeeCalculatorService.findLatest("tartu")).thenReturn(weatherData);
+
+        mockMvc.perform(get("/weather/tartu"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
+                .andExpect(jsonPath("$.name").value("Tartu-Tõravere"));
+        mockMvc.perform(get("/weather/tartu").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified());
+    }
+
+    /**
+     * Test that responses may be cached until the next import is completed and are revalidated
+     * if imports are not scheduled
+     */
+    @Test
+    void cacheControl() {
+        ResponseCachePolicy policy = new ResponseCachePolicy("0 15 * * * *", Duration.ofMinutes(2));
+        ZonedDateTime hour = ZonedDateTime.of(2023, 3, 1, 12, 0, 0, 0, ZoneId.systemDefault());
+
+        // Until the next import at 12:15 and its grace period
+        assertEquals(CacheControl.maxAge(Duration.ofMinutes(17)).cachePublic().getHeaderValue(),
+                policy.cacheControl(hour.toInstant()).getHeaderValue());
+        // Import started at 12:15 may not be completed until 12:17
+        assertEquals(CacheControl.maxAge(Duration.ofMinutes(1)).cachePublic().getHeaderValue(),
+                policy.cacheControl(hour.plusMinutes(16).toInstant()).getHeaderValue());
+        // Until the import at 13:15 and its grace period
+        assertEquals(CacheControl.maxAge(Duration.ofMinutes(60)).cachePublic().getHeaderValue(),
+                policy.cacheControl(hour.plusMinutes(17).toInstant()).getHeaderValue());
+
+        assertEquals("no-cache", new ResponseCachePolicy("-", Duration.ofMinutes(2)).cacheControl().getHeaderValue());
+    }
+}
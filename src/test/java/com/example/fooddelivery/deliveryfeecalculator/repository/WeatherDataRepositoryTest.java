@@ -0,0 +1,90 @@
+package com.example.fooddelivery.deliveryfeecalculator.repository;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.PhenomenonCategory;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJdbcTest
+class WeatherDataRepositoryTest {
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+
+    private WeatherData weatherData(String name, Instant timestamp, double airTemp) {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName(name);
+        weatherData.setAir_temp(airTemp);
+        weatherData.setWeather_phenomenon("Clear");
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
+
+    /**
+     * Test that only the newest weather data of the requested station is returned
+     */
+    @Test
+    void findLatestByName() {
+        Instant now = Instant.now();
+        weatherDataRepository.save(weatherData("Pärnu", now.minus(1, ChronoUnit.HOURS), 1));
+        weatherDataRepository.save(weatherData("Pärnu", now, 2));
+        weatherDataRepository.save(weatherData("Pärnu", now.minus(2, ChronoUnit.HOURS), 3));
+        weatherDataRepository.save(weatherData("Tallinn-Harku", now.plus(1, ChronoUnit.HOURS), 4));
+
+        WeatherData latest = weatherDataRepository.findLatestByName("Pärnu").orElseThrow();
+        assertEquals(2, latest.getAir_temp());
+        assertEquals("Pärnu", latest.getName());
+    }
+
+    /**
+     * Test that station without weather data returns empty result
+     */
+    @Test
+    void findLatestByNameWithoutData() {
+        assertTrue(weatherDataRepository.findLatestByName("Tartu-Tõravere").isEmpty());
+    }
+
+    /**
+     * Test that the latest weather data observed at or before the given time is returned
+     */
+    @Test
+    void findLatestByNameAt() {
+        Instant now = Instant.parse("2023-03-01T12:15:00Z");
+        weatherDataRepository.save(weatherData("Pärnu", now.minus(2, ChronoUnit.HOURS), 1));
+        weatherDataRepository.save(weatherData("Pärnu", now.minus(1, ChronoUnit.HOURS), 2));
+        weatherDataRepository.save(weatherData("Pärnu", now, 3));
+
+        assertEquals(2, weatherDataRepository.findLatestByNameAt("Pärnu", now.minus(30, ChronoUnit.MINUTES)).orElseThrow().getAir_temp());
+        assertEquals(2, weatherDataRepository.findLatestByNameAt("Pärnu", now.minus(1, ChronoUnit.HOURS)).orElseThrow().getAir_temp());
+        assertTrue(weatherDataRepository.findLatestByNameAt("Pärnu", now.minus(3, ChronoUnit.HOURS)).isEmpty());
+    }
+
+    /**
+     * Test that weather data is inserted once per station and observation time, and importing the same observations
+     * again updates the existing rows
+     */
+    @Test
+    void upsertAll() {
+        Instant now = Instant.parse("2023-03-01T12:15:00Z");
+        weatherDataRepository.upsertAll(List.of(
+                weatherData("Pärnu", now, 1),
+                weatherData("Haapsalu meteoroloogiajaam", now, 2),
+                weatherData("Tallinn-Harku", now, 3)));
+        WeatherData snow = weatherData("Haapsalu meteoroloogiajaam", now, 5);
+        snow.setWeather_phenomenon("Light snow shower");
+        weatherDataRepository.upsertAll(List.of(weatherData("Pärnu", now, 1), snow));
+
+        assertEquals(3, weatherDataRepository.count());
+        WeatherData haapsalu = weatherDataRepository.findLatestByName("Haapsalu meteoroloogiajaam").orElseThrow();
+        assertEquals(5, haapsalu.getAir_temp());
+        assertEquals(PhenomenonCategory.SNOW, haapsalu.getPhenomenon_category());
+        assertEquals(now, haapsalu.getTimestamp());
+        assertNotNull(haapsalu.getId());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.repository.CityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJdbcTest
+class CityRegistryTest {
+    @Autowired
+    private CityRepository cityRepository;
+    private CityRegistry cityRegistry;
+
+    @BeforeEach
+    void setUp() {
+        cityRegistry = new CityRegistry(cityRepository);
+        cityRegistry.reload();
+    }
+
+    /**
+     * Test if default cities have correct stations and regional base fees
+     */
+    @Test
+    void defaultCities() {
+        City tallinn = cityRegistry.find("tallinn").orElseThrow();
+        assertEquals("Tallinn-Harku", tallinn.getStation());
+        assertEquals(4, tallinn.getBaseFee("car"));
+        assertEquals(3.5, tallinn.getBaseFee("scooter"));
+        assertEquals(3, tallinn.getBaseFee("bike"));
+
+        City tartu = cityRegistry.find("Tartu").orElseThrow();
+        assertEquals("Tartu-Tõravere", tartu.getStation());
+        assertEquals(3.5, tartu.getBaseFee("car"));
+        assertEquals(3, tartu.getBaseFee("scooter"));
+        assertEquals(2.5, tartu.getBaseFee("bike"));
+
+        City parnu = cityRegistry.find("PÄRNU").orElseThrow();
+        assertEquals("Pärnu", parnu.getStation());
+        assertEquals(3, parnu.getBaseFee("car"));
+        assertEquals(2.5, parnu.getBaseFee("scooter"));
+        assertEquals(2, parnu.getBaseFee("bike"));
+
+        assertEquals(Set.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu"), cityRegistry.getStations());
+        assertTrue(cityRegistry.find("Narva").isEmpty());
+    }
+
+    /**
+     * Test that cities added to the database are found after reload
+     */
+    @Test
+    void reload() {
+        assertFalse(cityRegistry.reload());
+
+        cityRepository.save(new City(null, "Narva", "Narva", 3, 2.5, 2));
+        assertTrue(cityRegistry.find("Narva").isEmpty());
+        assertTrue(cityRegistry.reload());
+        assertEquals("Narva", cityRegistry.find("narva").orElseThrow().getStation());
+        assertEquals(4, cityRegistry.getCities().size());
+    }
+}
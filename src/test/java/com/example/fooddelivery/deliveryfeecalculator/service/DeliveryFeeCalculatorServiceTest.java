@@ -0,0 +1,440 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.exception.ApiRequestException;
+import com.example.fooddelivery.deliveryfeecalculator.exception.WeatherFetchException;
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRequest;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResponse;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeSnapshot;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRule;
+import com.example.fooddelivery.deliveryfeecalculator.model.ImportJob;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.repository.CityRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.FeeRuleRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.SchedulerLockRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DeliveryFeeCalculatorServiceTest {
+    private static final String[] CITIES = {"Tallinn", "Tartu", "Pärnu"};
+    private static final String[] VEHICLES = {"car", "scooter", "bike"};
+
+    private WeatherDataRepository weatherDataRepository;
+    private CityRepository cityRepository;
+    private CityRegistry cityRegistry;
+    private WeatherTimeline weatherTimeline;
+    private DeliveryFeeCalculatorService deliveryFeeCalculatorService;
+    private MeterRegistry meterRegistry;
+    private FeeRuleRepository feeRuleRepository;
+    private FeeStreamBroadcaster feeStreamBroadcaster;
+    private ForecastFeeService forecastFeeService;
+
+    @BeforeEach
+    void setUp() {
+        weatherDataRepository = mock(WeatherDataRepository.class);
+        cityRepository = mock(CityRepository.class);
+        when(cityRepository.findAll()).thenReturn(List.of(
+                new City(1L, "Tallinn", "Tallinn-Harku", 4, 3.5, 3),
+                new City(2L, "Tartu", "Tartu-Tõravere", 3.5, 3, 2.5),
+                new City(3L, "Pärnu", "Pärnu", 3, 2.5, 2)));
+        cityRegistry = new CityRegistry(cityRepository);
+        cityRegistry.reload();
+        weatherTimeline = new WeatherTimeline(weatherDataRepository, Duration.ofHours(48));
+        meterRegistry = new SimpleMeterRegistry();
+        feeRuleRepository = mock(FeeRuleRepository.class);
+        feeStreamBroadcaster = mock(FeeStreamBroadcaster.class);
+        forecastFeeService = mock(ForecastFeeService.class);
+        when(feeRuleRepository.findAll()).thenReturn(rules(FeeRules.defaultRules()));
+        deliveryFeeCalculatorService = createService(weatherDataRepository);
+        deliveryFeeCalculatorService.publishWeatherData(List.of(
+                weatherData("Tallinn-Harku", -15, 5, "Light snow shower"),
+                weatherData("Tartu-Tõravere", -5, 15, "Moderate rain"),
+                weatherData("Pärnu", 5, 25, "Clear")));
+    }
+
+    private DeliveryFeeCalculatorService createService(WeatherDataRepository weatherDataRepository) {
+        return createService(weatherDataRepository, null, new ObservationsParser());
+    }
+
+    private DeliveryFeeCalculatorService createService(WeatherDataRepository weatherDataRepository, WeatherFeedClient weatherFeedClient, ObservationsParser observationsParser) {
+        LatestWeatherCache latestWeatherCache = new LatestWeatherCache();
+        DeliveryFeeCalculator deliveryFeeCalculator = new DeliveryFeeCalculator();
+        DeliveryFeeMetrics deliveryFeeMetrics = new DeliveryFeeMetrics(meterRegistry, cityRegistry, latestWeatherCache);
+        FeeRuleRegistry feeRuleRegistry = new FeeRuleRegistry(feeRuleRepository, deliveryFeeCalculator);
+        feeRuleRegistry.reload();
+        return new DeliveryFeeCalculatorService(weatherDataRepository, latestWeatherCache, cityRegistry, weatherTimeline, weatherFeedClient, observationsParser, deliveryFeeCalculator, deliveryFeeMetrics, feeRuleRegistry, feeStreamBroadcaster, forecastFeeService);
+    }
+
+    private static List<FeeRule> rules(List<FeeRule> rules) {
+        long id = 1;
+        for (FeeRule rule : rules) rule.setId(id++);
+        return rules;
+    }
+
+    private WeatherData weatherData(String name, double airTemp, double windSpeed, String phenomenon) {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName(name);
+        weatherData.setAir_temp(airTemp);
+        weatherData.setWind_speed(windSpeed);
+        weatherData.setWeather_phenomenon(phenomenon);
+        weatherData.setTimestamp(Instant.now());
+        return weatherData;
+    }
+
+    /**
+     * Calculates the delivery fee and returns the error message instead of the fee if fee calculation fails.
+     */
+    private Object quote(String city, String vehicle) {
+        try {
+            return deliveryFeeCalculatorService.calculateFee(city, vehicle);
+        } catch (ApiRequestException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Test that delivery fee is calculated from the latest weather data of the city's station
+     */
+    @Test
+    void testCalculateFee() throws ApiRequestException {
+        assertEquals(4, deliveryFeeCalculatorService.calculateFee("Tallinn", "Car"));
+        assertEquals(5.5, deliveryFeeCalculatorService.calculateFee("tallinn", "scooter")); // 3.5 + 1 + 0 + 1
+        assertEquals(4, deliveryFeeCalculatorService.calculateFee("tartu", "bike")); // 2.5 + 0.5 + 0.5 + 0.5
+        assertEquals("Usage of selected vehicle type is forbidden", quote("pärnu", "bike"));
+        assertEquals("Invalid city!", quote("Narva", "car"));
+        assertEquals("Invalid vehicle type!", quote("Tartu", "plane"));
+    }
+
+    /**
+     * Test that the delivery fee at the coordinates of a delivery is calculated from the nearest station's weather data
+     * or from the weather data interpolated from the nearest stations, with the base fee of the city, and locations
+     * far from every station are rejected
+     */
+    @Test
+    void testCalculateFeeNearest() {
+        WeatherData harku = weatherData("Tallinn-Harku", -15, 5, "Light snow shower");
+        harku.setLatitude(59.398);
+        harku.setLongitude(24.603);
+        WeatherData pirita = weatherData("Tallinn-Pirita", 5, 5, "Clear");
+        pirita.setLatitude(59.470);
+        pirita.setLongitude(24.830);
+        deliveryFeeCalculatorService.publishWeatherData(List.of(harku, pirita));
+
+        assertEquals(3.5, deliveryFeeCalculatorService.quote("Tallinn", "scooter", 59.468, 24.825, false).getBreakdown().getTotal());
+        // 40 % of the way from Harku to Pirita: Harku is the nearest station, interpolated air temperature is about -8.8 °C
+        assertEquals(3.5 + 1 + 1, deliveryFeeCalculatorService.quote("Tallinn", "scooter", 59.4268, 24.6938, false).getBreakdown().getTotal());
+        assertEquals(3.5 + 0.5 + 1, deliveryFeeCalculatorService.quote("Tallinn", "scooter", 59.4268, 24.6938, true).getBreakdown().getTotal());
+        assertEquals(FeeResult.INVALID_CITY, deliveryFeeCalculatorService.quote("Narva", "scooter", 59.468, 24.825, false));
+        // Farther than the maximum distance from every station
+        for (boolean interpolate : new boolean[]{false, true}) {
+            FeeResult result = deliveryFeeCalculatorService.quote("Tallinn", "scooter", 0, 0, interpolate);
+            assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, result.getOutcome());
+            assertEquals("No weather data available near 0.0, 0.0", result.getReason());
+        }
+    }
+
+    /**
+     * Test that delivery fees are recalculated when new weather data is published, and the snapshot version changes
+     * and the snapshot is pushed to the fee stream only if the published weather data changes
+     */
+    @Test
+    void testPublishWeatherData() throws ApiRequestException {
+        String version = deliveryFeeCalculatorService.getSnapshotVersion();
+        clearInvocations(feeStreamBroadcaster);
+        deliveryFeeCalculatorService.publishWeatherData(List.of());
+        assertEquals(version, deliveryFeeCalculatorService.getSnapshotVersion());
+        verifyNoInteractions(feeStreamBroadcaster);
+
+        deliveryFeeCalculatorService.publishWeatherData(List.of(weatherData("Pärnu", 5, 5, "Clear")));
+        assertEquals(2, deliveryFeeCalculatorService.calculateFee("Pärnu", "bike"));
+        assertNotEquals(version, deliveryFeeCalculatorService.getSnapshotVersion());
+
+        FeeSnapshot snapshot = deliveryFeeCalculatorService.getSnapshot();
+        verify(feeStreamBroadcaster).broadcast(snapshot);
+        assertEquals(Set.of("Tallinn", "Tartu", "Pärnu"), snapshot.getFees().keySet());
+        assertEquals(2, snapshot.getFees().get("Pärnu").get("bike").getBreakdown().getTotal());
+        assertEquals(5.5, snapshot.getFees().get("Tallinn").get("scooter").getBreakdown().getTotal());
+        assertEquals(5, snapshot.getStations().get("Pärnu").getWind_speed());
+    }
+
+    /**
+     * Test that delivery fees are not calculated from outdated weather data if the stale data policy rejects it
+     */
+    @Test
+    void testStaleDataPolicy() throws ApiRequestException {
+        WeatherData outdated = weatherData("Tallinn-Harku", -15, 5, "Light snow shower");
+        outdated.setTimestamp(Instant.now().minus(4, ChronoUnit.HOURS));
+        deliveryFeeCalculatorService = createService(weatherDataRepository);
+        deliveryFeeCalculatorService.publishWeatherData(List.of(outdated, weatherData("Tartu-Tõravere", -5, 15, "Moderate rain")));
+        assertEquals(5.5, deliveryFeeCalculatorService.calculateFee("Tallinn", "scooter"));
+
+        ReflectionTestUtils.setField(deliveryFeeCalculatorService, "staleDataPolicy", StaleDataPolicy.REJECT);
+        assertEquals("Weather data of station Tallinn-Harku is outdated", quote("Tallinn", "scooter"));
+        assertEquals(4, deliveryFeeCalculatorService.calculateFee("tartu", "bike"));
+        assertEquals("Weather data of station Tallinn-Harku is outdated",
+                deliveryFeeCalculatorService.calculateFees(List.of(new FeeRequest("Tallinn", "car", null))).get(0).getError());
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.FEE_CALCULATION)
+                .tags("city", "Tallinn", "vehicle", "scooter", "outcome", "stale").timer().count());
+
+        // Weather data without an observation time can not be shown to be recent
+        WeatherData untimed = weatherData("Pärnu", 5, 5, "Clear");
+        untimed.setTimestamp(null);
+        FeeTable feeTable = FeeTable.build(cityRegistry.getCities(), Map.of("Pärnu", untimed), new DeliveryFeeCalculator());
+        assertEquals(2, feeTable.lookup("Pärnu", "bike").getBreakdown().getTotal());
+        assertEquals(FeeResult.Outcome.STALE, feeTable.lookup("Pärnu", "bike", Instant.now()).getOutcome());
+    }
+
+    /**
+     * Test that delivery fee calculations are counted by city, vehicle and outcome, and unknown cities and vehicles
+     * are not used as tags
+     */
+    @Test
+    void testMetrics() throws ApiRequestException {
+        deliveryFeeCalculatorService.calculateFee("Tallinn", "Car");
+        deliveryFeeCalculatorService.calculateFee("tallinn", "car");
+        quote("pärnu", "bike");
+        quote("Narva", "car");
+        quote("Tartu", "plane");
+        deliveryFeeCalculatorService.findLatest("Tartu");
+
+        assertEquals(2, meterRegistry.get(DeliveryFeeMetrics.FEE_CALCULATION)
+                .tags("city", "Tallinn", "vehicle", "car", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.FEE_CALCULATION)
+                .tags("city", "Pärnu", "vehicle", "bike", "outcome", "forbidden").timer().count());
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.FEE_CALCULATION)
+                .tags("city", "unknown", "vehicle", "car", "outcome", "invalid_city").timer().count());
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.FEE_CALCULATION)
+                .tags("city", "Tartu", "vehicle", "unknown", "outcome", "invalid_vehicle").timer().count());
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.LATEST_LOOKUP).tag("outcome", "success").timer().count());
+        assertEquals(3, meterRegistry.get(DeliveryFeeMetrics.DATA_AGE).gauges().size());
+        assertTrue(meterRegistry.get(DeliveryFeeMetrics.DATA_AGE).tag("station", "Pärnu").gauge().value() < 60);
+    }
+
+    /**
+     * Test that an unexpected error while parsing the feed fails the fetch, and the validators of the response are
+     * forgotten, so the same feed is downloaded again by the next fetch
+     */
+    @Test
+    void testFetchParseError() throws Exception {
+        WeatherFeedClient weatherFeedClient = mock(WeatherFeedClient.class);
+        ObservationsParser observationsParser = mock(ObservationsParser.class);
+        when(weatherFeedClient.fetch()).thenReturn(CompletableFuture.completedFuture(Optional.of(new byte[0])));
+        when(observationsParser.parse(any(), anySet())).thenThrow(new IllegalStateException("Unexpected value"));
+        deliveryFeeCalculatorService = createService(weatherDataRepository, weatherFeedClient, observationsParser);
+
+        WeatherFetchException exception = assertThrows(WeatherFetchException.class, deliveryFeeCalculatorService::fetchLatestWeatherData);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        // Validators are also forgotten before the first fetch, as the stations differ from the previous fetch
+        InOrder inOrder = inOrder(weatherFeedClient);
+        inOrder.verify(weatherFeedClient).fetch();
+        inOrder.verify(weatherFeedClient).invalidate();
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.IMPORT_FETCH).tag("outcome", "failure").timer().count());
+    }
+
+    /**
+     * Test that weather data is not imported if the weather portal can not be reached, and the import job fails
+     * with the cause
+     */
+    @Test
+    void testSaveWeatherDataFetchFailure() throws Exception {
+        WeatherFeedClient weatherFeedClient = new WeatherFeedClient("http://localhost:1/observations.php",
+                Duration.ofSeconds(1), Duration.ofSeconds(1), 1, Duration.ZERO);
+        deliveryFeeCalculatorService = createService(weatherDataRepository, weatherFeedClient, new ObservationsParser());
+
+        WeatherFetchException exception = assertThrows(WeatherFetchException.class, deliveryFeeCalculatorService::saveWeatherData);
+        assertTrue(exception.getMessage().startsWith("Unable to fetch weather data: "));
+        verify(weatherDataRepository, never()).upsertAll(any());
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.IMPORT_FETCH).tag("outcome", "failure").timer().count());
+
+        SchedulerLockRepository schedulerLockRepository = mock(SchedulerLockRepository.class);
+        SchedulerLock schedulerLock = mock(SchedulerLock.class);
+        when(schedulerLock.runExclusively(any(), any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+        WeatherImportCoordinator weatherImportCoordinator = new WeatherImportCoordinator(deliveryFeeCalculatorService, schedulerLock,
+                schedulerLockRepository, weatherDataRepository, weatherTimeline, new LatestWeatherCache(), Duration.ofHours(48));
+        WeatherImportJobs weatherImportJobs = new WeatherImportJobs(weatherImportCoordinator, mock(DeliveryFeeMetrics.class), 2);
+        try {
+            long id = weatherImportJobs.submit().getId();
+            ImportJob job = weatherImportJobs.find(id).orElseThrow();
+            for (int i = 0; i < 500 && job.isActive(); i++) {
+                Thread.sleep(10);
+                job = weatherImportJobs.find(id).orElseThrow();
+            }
+            assertEquals(ImportJob.Status.FAILED, job.getStatus());
+            assertEquals(exception.getMessage(), job.getError());
+            assertNull(job.getImported());
+            verify(schedulerLockRepository, never()).incrementVersion(any());
+        } finally {
+            weatherImportJobs.close();
+        }
+    }
+
+    /**
+     * Test that delivery fee calculation timers are registered on first use, also for cities added later,
+     * timers of removed cities are removed, and latency percentiles are recorded by outcome only
+     */
+    @Test
+    void testMetricsRegisteredForCities() {
+        assertNull(meterRegistry.find(DeliveryFeeMetrics.FEE_CALCULATION).timer());
+        quote("tartu", "scooter");
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.FEE_CALCULATION).timers().size());
+
+        when(cityRepository.findAll()).thenReturn(List.of(
+                new City(1L, "Tallinn", "Tallinn-Harku", 4, 3.5, 3),
+                new City(4L, "Narva", "Narva", 3, 2.5, 2)));
+        deliveryFeeCalculatorService.reloadCities();
+        verify(forecastFeeService).rebuild();
+        assertNull(meterRegistry.find(DeliveryFeeMetrics.FEE_CALCULATION).tag("city", "Tartu").timer());
+        quote("narva", "car");
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.FEE_CALCULATION)
+                .tags("city", "Narva", "vehicle", "car", "outcome", "no_weather_data").timer().count());
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.FEE_LATENCY).tag("outcome", "no_weather_data").timer().count());
+        assertNull(meterRegistry.find(DeliveryFeeMetrics.FEE_LATENCY).tagKeys("city").timer());
+    }
+
+    /**
+     * Test that delivery fee can not be calculated for a city without weather data
+     */
+    @Test
+    void testCalculateFeeWithoutWeatherData() {
+        deliveryFeeCalculatorService = createService(null);
+        assertEquals("No weather data available for station Tallinn-Harku", quote("tallinn", "car"));
+        assertEquals("No weather data available for station Tallinn-Harku", quote("tallinn", "plane"));
+        assertEquals("Invalid city!", quote("narva", "car"));
+    }
+
+    /**
+     * Test that every request of a batch gets its own result, also a null request
+     */
+    @Test
+    void testCalculateFees() {
+        Instant timestamp = Instant.parse("2023-03-01T12:00:00Z");
+        when(weatherDataRepository.findLatestByNameAt("Tartu-Tõravere", timestamp))
+                .thenReturn(Optional.of(weatherData("Tartu-Tõravere", 5, 25, "Clear")));
+        when(weatherDataRepository.findLatestByNameAt("Pärnu", timestamp)).thenReturn(Optional.empty());
+
+        List<FeeResponse> feeResponses = deliveryFeeCalculatorService.calculateFees(Arrays.asList(
+                new FeeRequest("Tallinn", "car", null),
+                new FeeRequest("Pärnu", "bike", null),
+                new FeeRequest("Narva", "car", null),
+                new FeeRequest("tartu", "car", timestamp),
+                new FeeRequest("tartu", "bike", timestamp),
+                new FeeRequest("pärnu", "car", timestamp),
+                null));
+
+        assertEquals(7, feeResponses.size());
+        assertEquals(4, feeResponses.get(0).getFee());
+        assertNull(feeResponses.get(0).getError());
+        assertNull(feeResponses.get(1).getFee());
+        assertEquals("Usage of selected vehicle type is forbidden", feeResponses.get(1).getError());
+        assertEquals("Invalid city!", feeResponses.get(2).getError());
+        assertEquals(3.5, feeResponses.get(3).getFee());
+        assertEquals(timestamp, feeResponses.get(3).getTimestamp());
+        assertEquals("Usage of selected vehicle type is forbidden", feeResponses.get(4).getError());
+        assertEquals("No weather data available for station Pärnu at " + timestamp, feeResponses.get(5).getError());
+        assertEquals("Invalid city!", feeResponses.get(6).getError());
+        assertNull(feeResponses.get(6).getCity());
+
+        // Weather data of a station at a specific time is read only once per batch
+        verify(weatherDataRepository, times(1)).findLatestByNameAt("Tartu-Tõravere", timestamp);
+    }
+
+    /**
+     * Test that delivery fee at a specific time is calculated from the weather data of that time
+     */
+    @Test
+    void testCalculateFeeAt() throws ApiRequestException {
+        Instant now = Instant.now();
+        WeatherData stormy = weatherData("Tallinn-Harku", 5, 25, "Clear");
+        stormy.setTimestamp(now.minus(2, ChronoUnit.HOURS));
+        WeatherData calm = weatherData("Tallinn-Harku", 5, 5, "Clear");
+        calm.setTimestamp(now.minus(1, ChronoUnit.HOURS));
+        weatherTimeline.add(List.of(stormy, calm));
+
+        assertEquals(3, deliveryFeeCalculatorService.calculateFee("tallinn", "bike", now.minus(30, ChronoUnit.MINUTES)));
+        ApiRequestException thrown = assertThrows(ApiRequestException.class, () ->
+                deliveryFeeCalculatorService.calculateFee("tallinn", "bike", now.minus(90, ChronoUnit.MINUTES)));
+        assertEquals("Usage of selected vehicle type is forbidden", thrown.getMessage());
+
+        // Older weather data than the timeline is looked up from the database
+        when(weatherDataRepository.findLatestByNameAt("Tallinn-Harku", now.minus(3, ChronoUnit.HOURS))).thenReturn(Optional.empty());
+        thrown = assertThrows(ApiRequestException.class, () ->
+                deliveryFeeCalculatorService.calculateFee("tallinn", "bike", now.minus(3, ChronoUnit.HOURS)));
+        assertEquals("No weather data available for station Tallinn-Harku at " + now.minus(3, ChronoUnit.HOURS), thrown.getMessage());
+        verify(weatherDataRepository, never()).findLatestByNameAt("Tallinn-Harku", now.minus(30, ChronoUnit.MINUTES));
+    }
+
+    /**
+     * Test that concurrent requests get the same results as sequential requests.
+     */
+    @Test
+    void testConcurrentCalculateFee() throws Exception {
+        // Expected results calculated by a single thread
+        Map<String, Object> expected = new HashMap<>();
+        for (String city : CITIES)
+            for (String vehicle : VEHICLES)
+                expected.put(city + vehicle, quote(city, vehicle));
+
+        int threads = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            results.add(executorService.submit(() -> {
+                start.await();
+                int mismatches = 0;
+                for (int n = 0; n < 20_000; n++) {
+                    String city = CITIES[(n + seed) % CITIES.length];
+                    String vehicle = VEHICLES[(n / CITIES.length + seed) % VEHICLES.length];
+                    if (!expected.get(city + vehicle).equals(quote(city, vehicle))) mismatches++;
+                }
+                return mismatches;
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> result : results) assertEquals(0, result.get(1, TimeUnit.MINUTES));
+        executorService.shutdown();
+    }
+
+    /**
+     * Test that changed fee rules are applied to the precomputed delivery fees and the forecast fees after reload
+     * and invalid rules are rejected
+     */
+    @Test
+    void testReloadFeeRules() throws ApiRequestException {
+        assertEquals(5.5, deliveryFeeCalculatorService.calculateFee("Tallinn", "scooter")); // 3.5 + 1 + 0 + 1
+
+        List<FeeRule> rules = FeeRules.defaultRules();
+        rules.removeIf(rule -> rule.getComponent().equals(FeeRule.ATEF) && rule.getVehicle().equals("scooter"));
+        when(feeRuleRepository.findAll()).thenReturn(rules(rules));
+        deliveryFeeCalculatorService.reloadFeeRules();
+        verify(forecastFeeService).rebuild();
+        assertEquals(4.5, deliveryFeeCalculatorService.calculateFee("Tallinn", "scooter")); // ATEF of scooters was removed
+        assertEquals(5, deliveryFeeCalculatorService.calculateFee("Tallinn", "bike")); // Rules of bikes did not change
+
+        List<FeeRule> overlapping = FeeRules.defaultRules();
+        overlapping.add(FeeRule.range(FeeRule.ATEF, "scooter", -20.0, true, -5.0, false, 2, false));
+        when(feeRuleRepository.findAll()).thenReturn(rules(overlapping));
+        assertThrows(ApiRequestException.class, () -> deliveryFeeCalculatorService.reloadFeeRules());
+        verify(forecastFeeService).rebuild(); // Not recalculated again
+        assertEquals(4.5, deliveryFeeCalculatorService.calculateFee("Tallinn", "scooter")); // ATEF of scooters was removed
+    }
+}
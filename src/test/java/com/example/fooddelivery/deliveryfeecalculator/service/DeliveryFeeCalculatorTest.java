@@ -1,6 +1,7 @@
 package com.example.fooddelivery.deliveryfeecalculator.service;
 
-import com.example.fooddelivery.deliveryfeecalculator.exception.ApiRequestException;
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
 import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,11 +11,15 @@ import static org.junit.jupiter.api.Assertions.*;
 class DeliveryFeeCalculatorTest {
     private DeliveryFeeCalculator deliveryFeeCalculator;
     private WeatherData weatherData;
+    private City tartu;
+    private City parnu;
 
     @BeforeEach
     void setUp() {
         deliveryFeeCalculator = new DeliveryFeeCalculator();
         weatherData = new WeatherData();
+        tartu = new City(2L, "Tartu", "Tartu-Tõravere", 3.5, 3, 2.5);
+        parnu = new City(3L, "Pärnu", "Pärnu", 3, 2.5, 2);
     }
 
 
@@ -31,27 +36,10 @@ class DeliveryFeeCalculatorTest {
      */
     @Test
     void testRBF() {
-        // For Tallinn
-        deliveryFeeCalculator.calculateRBF("tallinn", "car");
-        assertEquals(4, deliveryFeeCalculator.getRBF());
-        deliveryFeeCalculator.calculateRBF("tallinn", "scooter");
-        assertEquals(3.5, deliveryFeeCalculator.getRBF());
-        deliveryFeeCalculator.calculateRBF("tallinn", "bike");
-        assertEquals(3, deliveryFeeCalculator.getRBF());
-        // For Tartu
-        deliveryFeeCalculator.calculateRBF("tartu", "car");
-        assertEquals(3.5, deliveryFeeCalculator.getRBF());
-        deliveryFeeCalculator.calculateRBF("tartu", "scooter");
-        assertEquals(3, deliveryFeeCalculator.getRBF());
-        deliveryFeeCalculator.calculateRBF("tartu", "bike");
-        assertEquals(2.5, deliveryFeeCalculator.getRBF());
-        // For Pärnu
-        deliveryFeeCalculator.calculateRBF("pärnu", "car");
-        assertEquals(3, deliveryFeeCalculator.getRBF());
-        deliveryFeeCalculator.calculateRBF("pärnu", "scooter");
-        assertEquals(2.5, deliveryFeeCalculator.getRBF());
-        deliveryFeeCalculator.calculateRBF("pärnu", "bike");
-        assertEquals(2, deliveryFeeCalculator.getRBF());
+        City tallinn = new City(1L, "Tallinn", "Tallinn-Harku", 4, 3.5, 3);
+        assertEquals(4, deliveryFeeCalculator.calculateRBF(tallinn, "car"));
+        assertEquals(3.5, deliveryFeeCalculator.calculateRBF(tallinn, "scooter"));
+        assertEquals(3, deliveryFeeCalculator.calculateRBF(tallinn, "bike"));
     }
 
     /**
@@ -63,18 +51,15 @@ class DeliveryFeeCalculatorTest {
 
         // Air temperature is less than -10̊ C, then ATEF = 1 €
         weatherData.setAir_temp(-20);
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        assertEquals(1, deliveryFeeCalculator.calculateATEF());
+        assertEquals(1, deliveryFeeCalculator.calculateATEF("scooter", weatherData));
 
         // Air temperature is between -10̊ C and 0̊ C, then ATEF = 0,5 €
         weatherData.setAir_temp(-5);
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        assertEquals(0.5, deliveryFeeCalculator.calculateATEF());
+        assertEquals(0.5, deliveryFeeCalculator.calculateATEF("scooter", weatherData));
 
         // Air temperature is warmer than 0, then ATEF = 0 €
         weatherData.setAir_temp(5);
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        assertEquals(0, deliveryFeeCalculator.calculateATEF());
+        assertEquals(0, deliveryFeeCalculator.calculateATEF("scooter", weatherData));
     }
 
     /**
@@ -82,21 +67,14 @@ class DeliveryFeeCalculatorTest {
      * We assume that vehicle type is "bike"
      */
     @Test
-    void testWSEF() throws ApiRequestException {
+    void testWSEF() {
         // Wind speed is between 10 m/s and 20 m/s, then WSEF = 0,5 €
         weatherData.setWind_speed(15);
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        assertEquals(0.5, deliveryFeeCalculator.calculateWSEF());
+        assertEquals(0.5, deliveryFeeCalculator.calculateWSEF("bike", weatherData));
 
-        // In case of wind speed is greater than 20 m/s, then the error message “Usage of selected vehicle type is forbidden” has to be given
+        // In case of wind speed is greater than 20 m/s, then the usage of the vehicle is forbidden
         weatherData.setWind_speed(25);
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        ApiRequestException thrown = assertThrows(ApiRequestException.class, () ->
-                deliveryFeeCalculator.calculateWSEF(), "ApiRequestException error was expected"
-        );
-        assertTrue(thrown.getMessage().contentEquals("Usage of selected vehicle type is forbidden"));
-        // WSEF should be equal to 0
-        assertEquals(0, deliveryFeeCalculator.getWSEF());
+        assertEquals(FeeRules.FORBIDDEN, deliveryFeeCalculator.calculateWSEF("bike", weatherData));
     }
 
     /**
@@ -104,63 +82,44 @@ class DeliveryFeeCalculatorTest {
      * We assume that vehicle type is "scooter" or "bike"
      */
     @Test
-    void testWPEF() throws ApiRequestException {
+    void testWPEF() {
         // Weather phenomenon is related to snow or sleet, then WPEF = 1 €
         weatherData.setWeather_phenomenon("light snow");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        assertEquals(1, deliveryFeeCalculator.calculateWPEF());
+        assertEquals(1, deliveryFeeCalculator.calculateWPEF("scooter", weatherData));
         weatherData.setWeather_phenomenon("sleet");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        assertEquals(1, deliveryFeeCalculator.calculateWPEF());
+        assertEquals(1, deliveryFeeCalculator.calculateWPEF("scooter", weatherData));
 
         // Weather phenomenon is related to rain, then WPEF = 0,5 €
         weatherData.setWeather_phenomenon("heavy rain");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        assertEquals(0.5, deliveryFeeCalculator.calculateWPEF());
+        assertEquals(0.5, deliveryFeeCalculator.calculateWPEF("scooter", weatherData));
 
-        // In case the weather phenomenon is glaze, hail, or thunder, then the error message “Usage of
-        // selected vehicle type is forbidden” has to be given
+        // In case the weather phenomenon is glaze, hail, or thunder, then the usage of the vehicle is forbidden
         weatherData.setWeather_phenomenon("glaze");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        ApiRequestException thrown = assertThrows(ApiRequestException.class, () ->
-                deliveryFeeCalculator.calculateWPEF(), "ApiRequestException error was expected"
-        );
-        assertTrue(thrown.getMessage().contentEquals("Usage of selected vehicle type is forbidden"));
-        // WPEF should be equal to 0
-        assertEquals(0, deliveryFeeCalculator.getWPEF());
+        assertEquals(FeeRules.FORBIDDEN, deliveryFeeCalculator.calculateWPEF("scooter", weatherData));
 
         weatherData.setWeather_phenomenon("hail");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        ApiRequestException thrown2 = assertThrows(ApiRequestException.class, () ->
-                deliveryFeeCalculator.calculateWPEF(), "ApiRequestException error was expected"
-        );
-        assertTrue(thrown2.getMessage().contentEquals("Usage of selected vehicle type is forbidden"));
-        // WPEF should be equal to 0
-        assertEquals(0, deliveryFeeCalculator.getWPEF());
+        assertEquals(FeeRules.FORBIDDEN, deliveryFeeCalculator.calculateWPEF("scooter", weatherData));
 
         weatherData.setWeather_phenomenon("thunder");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        ApiRequestException thrown3 = assertThrows(ApiRequestException.class, () ->
-                deliveryFeeCalculator.calculateWPEF(), "ApiRequestException error was expected"
-        );
-        assertTrue(thrown3.getMessage().contentEquals("Usage of selected vehicle type is forbidden"));
-        // WPEF should be equal to 0
-        assertEquals(0, deliveryFeeCalculator.getWPEF());
+        assertEquals(FeeRules.FORBIDDEN, deliveryFeeCalculator.calculateWPEF("scooter", weatherData));
     }
 
     /**
      * Test if delivery fee is calculated correctly
      */
     @Test
-    void testCalculateFee() throws ApiRequestException {
+    void testCalculateFee() {
         weatherData.setAir_temp(8);
         weatherData.setWind_speed(9);
         weatherData.setWeather_phenomenon("Light rain");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        deliveryFeeCalculator.setCity("pärnu");
-        deliveryFeeCalculator.setVehicle("scooter");
 
-        assertEquals(3, deliveryFeeCalculator.calculateFee()); // 2.5 + 0 + 0 + 0.5
+        assertEquals(3, deliveryFeeCalculator.calculateFee(parnu, "scooter", weatherData).getBreakdown().getTotal()); // 2.5 + 0 + 0 + 0.5
+
+        // Forbidden vehicles and unknown vehicle types are rejected with the reason instead of an exception
+        weatherData.setWeather_phenomenon("Thunderstorm");
+        assertSame(FeeResult.FORBIDDEN, deliveryFeeCalculator.calculateFee(parnu, "scooter", weatherData));
+        assertEquals("Usage of selected vehicle type is forbidden", deliveryFeeCalculator.calculateFee(parnu, "bike", weatherData).getReason());
+        assertSame(FeeResult.INVALID_VEHICLE, deliveryFeeCalculator.calculateFee(parnu, "plane", weatherData));
 
     }
 
@@ -169,29 +128,19 @@ class DeliveryFeeCalculatorTest {
      * and is calculated if vehicle is "scooter" or "bike" in calculateFee() method
      */
     @Test
-    void testATEFType() throws ApiRequestException {
+    void testATEFType() {
         weatherData.setAir_temp(-11);
         weatherData.setWind_speed(9);
         weatherData.setWeather_phenomenon("clear");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        deliveryFeeCalculator.setCity("tartu");
 
         // For car ATEF should be 0
-        deliveryFeeCalculator.setVehicle("car");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(0, deliveryFeeCalculator.getATEF());
+        assertEquals(0, deliveryFeeCalculator.calculateFee(tartu, "car", weatherData).getBreakdown().getATEF());
 
         // For bike ATEF should be 1
-        deliveryFeeCalculator.setATEF(0);
-        deliveryFeeCalculator.setVehicle("bike");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(1, deliveryFeeCalculator.getATEF());
+        assertEquals(1, deliveryFeeCalculator.calculateFee(tartu, "bike", weatherData).getBreakdown().getATEF());
 
         // For scooter ATEF should be 1
-        deliveryFeeCalculator.setWPEF(0);
-        deliveryFeeCalculator.setVehicle("scooter");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(1, deliveryFeeCalculator.getATEF());
+        assertEquals(1, deliveryFeeCalculator.calculateFee(tartu, "scooter", weatherData).getBreakdown().getATEF());
     }
 
     /**
@@ -199,29 +148,19 @@ class DeliveryFeeCalculatorTest {
      * and is calculated if vehicle is "scooter" or "bike" in calculateFee() method
      */
     @Test
-    void testWPEFType() throws ApiRequestException {
+    void testWPEFType() {
         weatherData.setAir_temp(-11);
         weatherData.setWind_speed(9);
         weatherData.setWeather_phenomenon("light snow");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        deliveryFeeCalculator.setCity("tartu");
 
         // For car WPEF should be 0
-        deliveryFeeCalculator.setVehicle("car");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(0, deliveryFeeCalculator.getWPEF());
+        assertEquals(0, deliveryFeeCalculator.calculateFee(tartu, "car", weatherData).getBreakdown().getWPEF());
 
         // For bike WPEF should be 1
-        deliveryFeeCalculator.setWPEF(0);
-        deliveryFeeCalculator.setVehicle("bike");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(1, deliveryFeeCalculator.getWPEF());
+        assertEquals(1, deliveryFeeCalculator.calculateFee(tartu, "bike", weatherData).getBreakdown().getWPEF());
 
         // For scooter WPEF should be 1
-        deliveryFeeCalculator.setWPEF(0);
-        deliveryFeeCalculator.setVehicle("scooter");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(1, deliveryFeeCalculator.getWPEF());
+        assertEquals(1, deliveryFeeCalculator.calculateFee(tartu, "scooter", weatherData).getBreakdown().getWPEF());
     }
 
     /**
@@ -229,28 +168,18 @@ class DeliveryFeeCalculatorTest {
      * and is calculated if vehicle is "bike" in calculateFee() method
      */
     @Test
-    void testWSEFType() throws ApiRequestException {
+    void testWSEFType() {
         weatherData.setAir_temp(-11);
         weatherData.setWind_speed(15);
         weatherData.setWeather_phenomenon("light snow");
-        deliveryFeeCalculator.setWeatherData(weatherData);
-        deliveryFeeCalculator.setCity("tartu");
 
         // For car WSEF should be 0
-        deliveryFeeCalculator.setVehicle("car");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(0, deliveryFeeCalculator.getWSEF());
+        assertEquals(0, deliveryFeeCalculator.calculateFee(tartu, "car", weatherData).getBreakdown().getWSEF());
 
         // For bike WSEF should be 0.5
-        deliveryFeeCalculator.setWSEF(0);
-        deliveryFeeCalculator.setVehicle("bike");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(0.5, deliveryFeeCalculator.getWSEF());
-
-        // For scooter WSEF should be 1
-        deliveryFeeCalculator.setWSEF(0);
-        deliveryFeeCalculator.setVehicle("scooter");
-        deliveryFeeCalculator.calculateFee();
-        assertEquals(0, deliveryFeeCalculator.getWSEF());
+        assertEquals(0.5, deliveryFeeCalculator.calculateFee(tartu, "bike", weatherData).getBreakdown().getWSEF());
+
+        // For scooter WSEF should be 0
+        assertEquals(0, deliveryFeeCalculator.calculateFee(tartu, "scooter", weatherData).getBreakdown().getWSEF());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRule;
+import com.example.fooddelivery.deliveryfeecalculator.repository.FeeRuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJdbcTest
+class FeeRuleRegistryTest {
+    @Autowired
+    private FeeRuleRepository feeRuleRepository;
+    private DeliveryFeeCalculator deliveryFeeCalculator;
+    private FeeRuleRegistry feeRuleRegistry;
+
+    @BeforeEach
+    void setUp() {
+        deliveryFeeCalculator = new DeliveryFeeCalculator();
+        feeRuleRegistry = new FeeRuleRegistry(feeRuleRepository, deliveryFeeCalculator);
+        feeRuleRegistry.reload();
+    }
+
+    /**
+     * Test that the rules of the FEE_RULE table are the rules of the task description
+     */
+    @Test
+    void defaultRules() {
+        Set<FeeRule> loaded = new HashSet<>();
+        for (FeeRule rule : feeRuleRegistry.getRules()) {
+            FeeRule copy = new FeeRule(null, rule.getComponent(), rule.getVehicle(), rule.getMin_value(), rule.isMin_inclusive(),
+                    rule.getMax_value(), rule.isMax_inclusive(), rule.getPhenomenon(), rule.getFee(), rule.isForbidden());
+            loaded.add(copy);
+        }
+        assertEquals(new HashSet<>(FeeRules.defaultRules()), loaded);
+        assertEquals(loaded.size(), deliveryFeeCalculator.getFeeRules().size());
+    }
+
+    /**
+     * Test that changed rules are swapped into the calculator after reload and invalid rules are rejected
+     */
+    @Test
+    void reload() {
+        assertFalse(feeRuleRegistry.reload());
+        FeeRules previous = deliveryFeeCalculator.getFeeRules();
+
+        feeRuleRepository.save(FeeRule.range(FeeRule.WSEF, "scooter", 15.0, true, null, false, 1, false));
+        assertTrue(feeRuleRegistry.reload());
+        assertNotSame(previous, deliveryFeeCalculator.getFeeRules());
+        assertEquals(1, deliveryFeeCalculator.getFeeRules().windSpeedFee("scooter", 16));
+
+        FeeRules valid = deliveryFeeCalculator.getFeeRules();
+        feeRuleRepository.save(FeeRule.range(FeeRule.WSEF, "scooter", 18.0, true, null, false, 2, false));
+        assertThrows(IllegalArgumentException.class, () -> feeRuleRegistry.reload());
+        assertSame(valid, deliveryFeeCalculator.getFeeRules());
+    }
+}
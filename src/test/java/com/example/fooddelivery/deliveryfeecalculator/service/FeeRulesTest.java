@@ -0,0 +1,94 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeRule;
+import com.example.fooddelivery.deliveryfeecalculator.model.PhenomenonCategory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeeRulesTest {
+    private final FeeRules feeRules = FeeRules.DEFAULT;
+
+    /**
+     * Test that the bounds of the default ranges are included or excluded as in the business rules
+     */
+    @Test
+    void rangeBounds() {
+        assertEquals(1, feeRules.airTemperatureFee("bike", -10.1));
+        assertEquals(0.5, feeRules.airTemperatureFee("bike", -10));
+        assertEquals(0.5, feeRules.airTemperatureFee("scooter", 0));
+        assertEquals(0, feeRules.airTemperatureFee("scooter", 0.1));
+        assertEquals(0, feeRules.airTemperatureFee("car", -30));
+
+        assertEquals(0, feeRules.windSpeedFee("bike", 9.9));
+        assertEquals(0.5, feeRules.windSpeedFee("bike", 10));
+        assertEquals(0.5, feeRules.windSpeedFee("bike", 20));
+        assertTrue(Double.isNaN(feeRules.windSpeedFee("bike", 20.1)));
+        assertEquals(0, feeRules.windSpeedFee("scooter", 30));
+    }
+
+    /**
+     * Test that weather phenomena are classified by the keywords in the order of precedence
+     */
+    @Test
+    void phenomena() {
+        assertEquals(PhenomenonCategory.SNOW, PhenomenonCategory.classify("Light snow shower"));
+        assertEquals(PhenomenonCategory.SLEET, PhenomenonCategory.classify("Moderate sleet"));
+        assertEquals(PhenomenonCategory.RAIN, PhenomenonCategory.classify("Heavy rain"));
+        assertEquals(PhenomenonCategory.THUNDER, PhenomenonCategory.classify("Thunderstorm"));
+        assertEquals(PhenomenonCategory.OTHER, PhenomenonCategory.classify("Light shower"));
+        assertEquals(PhenomenonCategory.OTHER, PhenomenonCategory.classify(null));
+        assertEquals(PhenomenonCategory.SNOW, PhenomenonCategory.classify("Freezing snow")); // Unknown phenomenon
+
+        // Table of the known phenomena gives the same categories as the keywords (uppercase is not in the table)
+        PhenomenonCategory.knownPhenomena().forEach((phenomenon, category) ->
+                assertEquals(category, PhenomenonCategory.classify(phenomenon.toUpperCase()), phenomenon));
+
+        assertEquals(1, feeRules.phenomenonFee("scooter", PhenomenonCategory.SNOW));
+        assertTrue(Double.isNaN(feeRules.phenomenonFee("bike", PhenomenonCategory.GLAZE)));
+        assertEquals(0, feeRules.phenomenonFee("bike", PhenomenonCategory.OTHER));
+        assertEquals(0, feeRules.phenomenonFee("car", PhenomenonCategory.HAIL));
+    }
+
+    /**
+     * Test that many ranges are found by binary search
+     */
+    @Test
+    void manyRanges() {
+        List<FeeRule> rules = new ArrayList<>();
+        for (int i = 99; i >= 0; i--) rules.add(FeeRule.range(FeeRule.ATEF, "car", (double) i, true, i + 1.0, false, i + 1, false));
+        FeeRules compiled = FeeRules.compile(rules);
+
+        assertEquals(0, compiled.airTemperatureFee("car", -0.5));
+        assertEquals(1, compiled.airTemperatureFee("car", 0));
+        assertEquals(43, compiled.airTemperatureFee("car", 42.5));
+        assertEquals(100, compiled.airTemperatureFee("car", 99.9));
+        assertEquals(0, compiled.airTemperatureFee("car", 100));
+    }
+
+    /**
+     * Test that overlapping, empty and unknown rules are rejected
+     */
+    @Test
+    void invalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> FeeRules.compile(List.of(
+                FeeRule.range(FeeRule.WSEF, "bike", 10.0, true, 20.0, true, 0.5, false),
+                FeeRule.range(FeeRule.WSEF, "bike", 20.0, true, null, false, 0, true))));
+        assertThrows(IllegalArgumentException.class, () -> FeeRules.compile(List.of(
+                FeeRule.range(FeeRule.WSEF, "bike", 20.0, false, 10.0, false, 0.5, false))));
+        assertThrows(IllegalArgumentException.class, () -> FeeRules.compile(List.of(
+                FeeRule.range("XYZ", "bike", 10.0, true, 20.0, true, 0.5, false))));
+        assertThrows(IllegalArgumentException.class, () -> FeeRules.compile(List.of(
+                FeeRule.phenomenon("bike", PhenomenonCategory.RAIN, 0.5, false),
+                FeeRule.phenomenon("bike", PhenomenonCategory.RAIN, 1, false))));
+
+        // Adjacent ranges sharing a bound are valid if only one of them includes it
+        FeeRules adjacent = FeeRules.compile(List.of(
+                FeeRule.range(FeeRule.WSEF, "bike", 10.0, true, 20.0, true, 0.5, false),
+                FeeRule.range(FeeRule.WSEF, "bike", 20.0, false, null, false, 0, true)));
+        assertEquals(0.5, adjacent.windSpeedFee("bike", 20));
+    }
+}
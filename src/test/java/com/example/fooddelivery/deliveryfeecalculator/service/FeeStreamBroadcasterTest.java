@@ -0,0 +1,180 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeBreakdown;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeeStreamBroadcasterTest {
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final List<FeeStreamBroadcaster> broadcasters = new CopyOnWriteArrayList<>();
+    private final FeeStreamBroadcaster broadcaster = newBroadcaster(2, Duration.ofMinutes(1));
+
+    private FeeStreamBroadcaster newBroadcaster(int senderThreads, Duration sendTimeout) {
+        FeeStreamBroadcaster broadcaster = new FeeStreamBroadcaster(new ObjectMapper(), Duration.ofMinutes(1), 3, senderThreads, sendTimeout) {
+            @Override
+            SseEmitter newEmitter(long timeout) {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+        broadcasters.add(broadcaster);
+        return broadcaster;
+    }
+
+    /**
+     * Emitter that records the sent events, and can block while sending like a slow client or fail like a disconnected one
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        volatile CountDownLatch blocked; // Sending waits until released, if set
+        final CountDownLatch sending = new CountDownLatch(1); // Released when the first send starts
+        volatile boolean disconnected;
+        volatile Throwable failure; // Error the emitter was completed with
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            CountDownLatch latch = blocked;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (disconnected) throw new IOException("Broken pipe");
+            StringBuilder event = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) event.append(data.getData());
+            events.add(event.toString());
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failure = ex;
+            super.completeWithError(ex);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (FeeStreamBroadcaster broadcaster : broadcasters) broadcaster.close();
+    }
+
+    private static FeeSnapshot snapshot(String version, double total) {
+        return new FeeSnapshot(version, Map.of("Tartu", Map.of("bike", FeeResult.success(new FeeBreakdown("Tartu", "bike", total, 0, 0, 0)))), Map.of());
+    }
+
+    private static void await(RecordingEmitter emitter, int events) throws InterruptedException {
+        for (int i = 0; i < 500 && emitter.events.size() < events; i++) Thread.sleep(10);
+        assertEquals(events, emitter.events.size());
+    }
+
+    /**
+     * Test that the same serialized event is sent to every subscriber and new subscribers get the current snapshot
+     */
+    @Test
+    void broadcast() throws Exception {
+        RecordingEmitter first = (RecordingEmitter) broadcaster.subscribe().orElseThrow();
+        broadcaster.broadcast(snapshot("v1", 2.5));
+        await(first, 1);
+        assertTrue(first.events.get(0).startsWith("id:v1\nevent:fees\ndata:{\"version\":\"v1\",\"fees\":{\"Tartu\":{\"bike\":"));
+        assertTrue(first.events.get(0).endsWith("}\n\n"));
+        assertEquals(first.events.get(0).length() - 2, first.events.get(0).indexOf("\n\n")); // A single event
+
+        RecordingEmitter second = (RecordingEmitter) broadcaster.subscribe().orElseThrow();
+        await(second, 1);
+        assertEquals(first.events.get(0), second.events.get(0));
+        assertEquals(2, broadcaster.getSubscriberCount());
+
+        broadcaster.heartbeat();
+        await(first, 2);
+        assertEquals(":\n\n", first.events.get(1));
+    }
+
+    /**
+     * Test that a slow subscriber skips to the latest snapshot without delaying the other subscribers
+     */
+    @Test
+    void slowSubscriber() throws Exception {
+        RecordingEmitter slow = (RecordingEmitter) broadcaster.subscribe().orElseThrow();
+        RecordingEmitter fast = (RecordingEmitter) broadcaster.subscribe().orElseThrow();
+        slow.blocked = new CountDownLatch(1);
+
+        broadcaster.broadcast(snapshot("v1", 2.5));
+        await(fast, 1);
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+        broadcaster.broadcast(snapshot("v2", 3));
+        broadcaster.broadcast(snapshot("v3", 3.5));
+        for (int i = 0; i < 500 && !fast.events.get(fast.events.size() - 1).startsWith("id:v3\n"); i++) Thread.sleep(10);
+        assertTrue(fast.events.get(fast.events.size() - 1).startsWith("id:v3\n"));
+        assertEquals(0, slow.events.size());
+
+        slow.blocked.countDown();
+        await(slow, 2); // The first snapshot that was being sent and the latest one
+        assertTrue(slow.events.get(0).startsWith("id:v1\n"));
+        assertTrue(slow.events.get(1).startsWith("id:v3\n"));
+    }
+
+    /**
+     * Test that a subscriber that stops reading is dropped after the send timeout, and the other subscribers
+     * keep receiving events while its send is blocked
+     */
+    @Test
+    void stalledSubscriber() throws Exception {
+        FeeStreamBroadcaster broadcaster = newBroadcaster(1, Duration.ofMillis(50));
+        RecordingEmitter stalled = (RecordingEmitter) broadcaster.subscribe().orElseThrow();
+        stalled.blocked = new CountDownLatch(1);
+        broadcaster.broadcast(snapshot("v1", 2.5));
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS)); // The only sender thread is blocked
+
+        RecordingEmitter other = (RecordingEmitter) broadcaster.subscribe().orElseThrow();
+        broadcaster.dropStalledSubscribers();
+        assertEquals(0, other.events.size()); // The send has not taken too long yet
+        Thread.sleep(100);
+        broadcaster.dropStalledSubscribers();
+        await(other, 1);
+        assertEquals(1, broadcaster.getSubscriberCount());
+
+        broadcaster.broadcast(snapshot("v2", 3));
+        await(other, 2);
+        assertNull(stalled.failure);
+        stalled.blocked.countDown();
+        for (int i = 0; i < 500 && stalled.failure == null; i++) Thread.sleep(10);
+        assertInstanceOf(TimeoutException.class, stalled.failure);
+        assertEquals(1, stalled.events.size()); // The event that was being sent, but not the later one
+    }
+
+    /**
+     * Test that disconnected subscribers are removed and the number of subscribers is limited
+     */
+    @Test
+    void subscribers() throws Exception {
+        RecordingEmitter disconnected = (RecordingEmitter) broadcaster.subscribe().orElseThrow();
+        broadcaster.subscribe().orElseThrow();
+        broadcaster.subscribe().orElseThrow();
+        assertTrue(broadcaster.subscribe().isEmpty());
+
+        disconnected.disconnected = true;
+        broadcaster.broadcast(snapshot("v1", 2.5));
+        for (int i = 0; i < 500 && broadcaster.getSubscriberCount() > 2; i++) Thread.sleep(10);
+        assertEquals(2, broadcaster.getSubscriberCount());
+        assertTrue(broadcaster.subscribe().isPresent());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.example.fooddelivery.deliveryfeecalculator.model.ForecastPeriod;
+import com.example.fooddelivery.deliveryfeecalculator.repository.CityRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.SchedulerLockRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherForecastRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ForecastFeeServiceTest {
+    private static final Instant NIGHT = Instant.parse("2023-03-01T20:30:00Z");
+
+    private CityRepository cityRepository;
+    private CityRegistry cityRegistry;
+    private DeliveryFeeCalculator deliveryFeeCalculator;
+    private MeterRegistry meterRegistry;
+    private SchedulerLockRepository schedulerLockRepository;
+    private WeatherForecastRepository weatherForecastRepository;
+    private TaskScheduler taskScheduler;
+    private ForecastFeeService forecastFeeService;
+    private byte[] feed;
+    private List<ForecastPeriod> forecast;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityRepository = mock(CityRepository.class);
+        when(cityRepository.findAll()).thenReturn(List.of(
+                new City(1L, "Tallinn", "Tallinn-Harku", 4, 3.5, 3),
+                new City(2L, "Tartu", "Tartu-Tõravere", 3.5, 3, 2.5)));
+        cityRegistry = new CityRegistry(cityRepository);
+        cityRegistry.reload();
+        deliveryFeeCalculator = new DeliveryFeeCalculator();
+        meterRegistry = new SimpleMeterRegistry();
+        DeliveryFeeMetrics deliveryFeeMetrics = new DeliveryFeeMetrics(meterRegistry, cityRegistry, new LatestWeatherCache());
+        schedulerLockRepository = mock(SchedulerLockRepository.class);
+        weatherForecastRepository = mock(WeatherForecastRepository.class);
+        taskScheduler = mock(TaskScheduler.class);
+        forecastFeeService = new ForecastFeeService(cityRegistry, deliveryFeeCalculator, new ForecastParser(), deliveryFeeMetrics,
+                mock(SchedulerLock.class), schedulerLockRepository, weatherForecastRepository,
+                mock(WeatherFeedClient.class), taskScheduler, false);
+        try (InputStream in = getClass().getResourceAsStream("/forecast.xml")) {
+            feed = in.readAllBytes();
+        }
+        forecast = new ForecastParser().parse(new ByteArrayInputStream(feed));
+    }
+
+    /**
+     * Test that delivery fees are quoted from the published forecast and the quotes are recorded in the metrics
+     */
+    @Test
+    void quote() {
+        assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, forecastFeeService.quote("Tallinn", "bike", NIGHT).getOutcome());
+
+        forecastFeeService.publishForecast(forecast);
+        // Night: Harku -12 °C, wind 9 m/s, light snowfall
+        assertEquals(3 + 1 + 0 + 1, forecastFeeService.quote("Tallinn", "bike", NIGHT).getBreakdown().getTotal());
+        assertSame(FeeResult.INVALID_CITY, forecastFeeService.quote("Narva", "bike", NIGHT));
+        assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, forecastFeeService.quote("Tallinn", "bike", Instant.parse("2023-03-04T12:00:00Z")).getOutcome());
+        assertEquals(1, meterRegistry.get(DeliveryFeeMetrics.FEE_CALCULATION)
+                .tags("city", "Tallinn", "vehicle", "bike", "outcome", "success").timer().count());
+
+        // A new forecast replaces the previous one
+        forecastFeeService.publishForecast(forecast.subList(2, forecast.size()));
+        assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, forecastFeeService.quote("Tallinn", "bike", NIGHT).getOutcome());
+    }
+
+    /**
+     * Test that the delivery fees are recalculated with the reloaded cities and extra fee rules on rebuild,
+     * and quotes keep using the previous fees until then
+     */
+    @Test
+    void rebuild() {
+        forecastFeeService.publishForecast(forecast);
+        assertEquals(3 + 1 + 0 + 1, forecastFeeService.quote("Tallinn", "bike", NIGHT).getBreakdown().getTotal());
+
+        when(cityRepository.findAll()).thenReturn(List.of(
+                new City(1L, "Tallinn", "Tallinn-Harku", 4, 3.5, 2),
+                new City(2L, "Tartu", "Tartu-Tõravere", 3.5, 3, 2.5)));
+        cityRegistry.reload();
+        assertEquals(3 + 1 + 0 + 1, forecastFeeService.quote("Tallinn", "bike", NIGHT).getBreakdown().getTotal());
+        forecastFeeService.rebuild();
+        assertEquals(2 + 1 + 0 + 1, forecastFeeService.quote("Tallinn", "bike", NIGHT).getBreakdown().getTotal());
+
+        deliveryFeeCalculator.setFeeRules(FeeRules.compile(List.of()));
+        forecastFeeService.rebuild();
+        assertEquals(2, forecastFeeService.quote("Tallinn", "bike", NIGHT).getBreakdown().getTotal());
+    }
+
+    /**
+     * Test that the forecast imported by another instance is published once, and a stored forecast that can not
+     * be parsed is parsed again on the next poll
+     */
+    @Test
+    void synchronize() {
+        assertFalse(forecastFeeService.synchronize());
+
+        when(schedulerLockRepository.getVersion(ForecastFeeService.FORECAST_TASK)).thenReturn(1L);
+        when(weatherForecastRepository.findFeed()).thenReturn(Optional.of("<forecasts>".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(forecastFeeService.synchronize());
+
+        when(weatherForecastRepository.findFeed()).thenReturn(Optional.of(feed));
+        assertTrue(forecastFeeService.synchronize());
+        assertEquals(3 + 1 + 0 + 1, forecastFeeService.quote("Tallinn", "bike", NIGHT).getBreakdown().getTotal());
+        assertFalse(forecastFeeService.synchronize());
+    }
+
+    /**
+     * Test that the startup import runs on the scheduler of the scheduled tasks only if it is enabled
+     */
+    @Test
+    void importOnStartup() {
+        forecastFeeService.importOnStartup();
+        ForecastFeeService importingService = new ForecastFeeService(cityRegistry, deliveryFeeCalculator, new ForecastParser(),
+                new DeliveryFeeMetrics(meterRegistry, cityRegistry, new LatestWeatherCache()), mock(SchedulerLock.class),
+                schedulerLockRepository, weatherForecastRepository, mock(WeatherFeedClient.class), taskScheduler, true);
+        verifyNoInteractions(taskScheduler);
+
+        importingService.importOnStartup();
+        verify(taskScheduler).schedule(any(Runnable.class), any(Instant.class));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.City;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastFeeTableTest {
+    private ForecastFeeTable forecastFeeTable;
+
+    @BeforeEach
+    void setUp() throws XMLStreamException {
+        List<City> cities = List.of(
+                new City(1L, "Tallinn", "Tallinn-Harku", 4, 3.5, 3),
+                new City(2L, "Tartu", "Tartu-Tõravere", 3.5, 3, 2.5),
+                new City(3L, "Pärnu", "Pärnu", 3, 2.5, 2));
+        InputStream forecast = getClass().getResourceAsStream("/forecast.xml");
+        forecastFeeTable = ForecastFeeTable.build(cities, new ForecastParser().parse(forecast), new DeliveryFeeCalculator());
+    }
+
+    /**
+     * Test that delivery fees are looked up by the hour of the delivery from the forecast of the city's place,
+     * or of the whole country if the feed has no forecast of the place
+     */
+    @Test
+    void lookup() {
+        // Night: Harku -12 °C, wind 9 m/s, light snowfall
+        assertEquals(3 + 1 + 0 + 1, forecastFeeTable.lookup("Tallinn", "bike", Instant.parse("2023-03-01T20:30:00Z")).getBreakdown().getTotal());
+        // Day: Harku wind 21 m/s, Tartu 1 °C, wind 18 m/s, light rain
+        assertSame(FeeResult.FORBIDDEN, forecastFeeTable.lookup("tallinn", "bike", Instant.parse("2023-03-02T04:00:00Z")));
+        assertEquals(2.5 + 0 + 0.5 + 0.5, forecastFeeTable.lookup("Tartu", "bike", Instant.parse("2023-03-02T15:59:59Z")).getBreakdown().getTotal());
+        // Pärnu is not a place of the feed: -14 °C, light snowfall of the whole country
+        assertEquals(2.5 + 1 + 0 + 1, forecastFeeTable.lookup("Pärnu", "scooter", Instant.parse("2023-03-02T03:00:00Z")).getBreakdown().getTotal());
+        assertSame(FeeResult.FORBIDDEN, forecastFeeTable.lookup("Tartu", "scooter", Instant.parse("2023-03-03T12:00:00Z")));
+    }
+
+    /**
+     * Test that deliveries outside the forecast are rejected
+     */
+    @Test
+    void outsideForecast() {
+        assertEquals(Instant.parse("2023-03-01T16:00:00Z"), forecastFeeTable.getStart());
+        assertEquals(Instant.parse("2023-03-03T16:00:00Z"), forecastFeeTable.getEnd());
+        assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, forecastFeeTable.lookup("Tallinn", "car", Instant.parse("2023-03-01T15:59:59Z")).getOutcome());
+        assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, forecastFeeTable.lookup("Tallinn", "car", Instant.parse("2023-03-03T16:00:00Z")).getOutcome());
+        assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, ForecastFeeTable.EMPTY.lookup("Tallinn", "car", Instant.parse("2023-03-02T12:00:00Z")).getOutcome());
+    }
+}
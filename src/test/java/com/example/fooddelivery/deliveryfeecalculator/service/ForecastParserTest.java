@@ -0,0 +1,62 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.ForecastPeriod;
+import com.example.fooddelivery.deliveryfeecalculator.model.PhenomenonCategory;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastParserTest {
+    private final ForecastParser forecastParser = new ForecastParser();
+
+    private InputStream forecast() {
+        return getClass().getResourceAsStream("/forecast.xml");
+    }
+
+    /**
+     * Test that the night and day periods of every date are parsed in order, night from 18:00 of the previous day
+     * to 06:00 and day from 06:00 to 18:00 Estonian time
+     */
+    @Test
+    void periods() throws XMLStreamException {
+        List<ForecastPeriod> periods = forecastParser.parse(forecast());
+
+        assertEquals(4, periods.size());
+        assertEquals(Instant.parse("2023-03-01T16:00:00Z"), periods.get(0).getStart());
+        assertEquals(Instant.parse("2023-03-02T04:00:00Z"), periods.get(0).getEnd());
+        assertEquals(Instant.parse("2023-03-02T04:00:00Z"), periods.get(1).getStart());
+        assertEquals(Instant.parse("2023-03-03T16:00:00Z"), periods.get(3).getEnd());
+        assertTrue(periods.get(2).getPlaces().isEmpty());
+        assertEquals(PhenomenonCategory.GLAZE, periods.get(3).getGeneral().getPhenomenon_category());
+    }
+
+    /**
+     * Test that the forecast of a place uses the minimum temperature at night and the maximum temperature by day,
+     * and the wind of the station of the place or the mean wind of all stations
+     */
+    @Test
+    void places() throws XMLStreamException {
+        List<ForecastPeriod> periods = forecastParser.parse(forecast());
+
+        WeatherData harkuNight = periods.get(0).getPlaces().get("Harku");
+        assertEquals(-12, harkuNight.getAir_temp());
+        assertEquals(9, harkuNight.getWind_speed());
+        assertEquals(PhenomenonCategory.SNOW, harkuNight.getPhenomenon_category());
+        assertEquals(periods.get(0).getStart(), harkuNight.getTimestamp());
+
+        WeatherData tartuDay = periods.get(1).getPlaces().get("Tartu");
+        assertEquals(1, tartuDay.getAir_temp());
+        assertEquals(18, tartuDay.getWind_speed());
+        assertEquals("Light rain", tartuDay.getWeather_phenomenon());
+
+        WeatherData general = periods.get(0).getGeneral();
+        assertEquals(-14, general.getAir_temp());
+        assertEquals(11, general.getWind_speed());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatestWeatherCacheTest {
+    private LatestWeatherCache latestWeatherCache;
+
+    @BeforeEach
+    void setUp() {
+        latestWeatherCache = new LatestWeatherCache();
+    }
+
+    private WeatherData weatherData(String name, Instant timestamp) {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName(name);
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
+
+    /**
+     * Test that published weather data replaces older weather data of the same station only
+     */
+    @Test
+    void publish() {
+        Instant now = Instant.now();
+        WeatherData tallinn = weatherData("Tallinn-Harku", now);
+        WeatherData parnu = weatherData("Pärnu", now);
+        latestWeatherCache.publish(List.of(tallinn, parnu));
+
+        WeatherData newerTallinn = weatherData("Tallinn-Harku", now.plus(1, ChronoUnit.HOURS));
+        latestWeatherCache.publish(List.of(newerTallinn));
+
+        assertSame(newerTallinn, latestWeatherCache.get("Tallinn-Harku").orElseThrow());
+        assertSame(parnu, latestWeatherCache.get("Pärnu").orElseThrow());
+        assertTrue(latestWeatherCache.get("Tartu-Tõravere").isEmpty());
+    }
+
+    /**
+     * Test that older weather data does not replace newer weather data
+     */
+    @Test
+    void publishOlderWeatherData() {
+        Instant now = Instant.now();
+        WeatherData latest = weatherData("Pärnu", now);
+        latestWeatherCache.publish(List.of(latest));
+        latestWeatherCache.publish(List.of(weatherData("Pärnu", now.minus(1, ChronoUnit.HOURS))));
+
+        assertSame(latest, latestWeatherCache.get("Pärnu").orElseThrow());
+    }
+}
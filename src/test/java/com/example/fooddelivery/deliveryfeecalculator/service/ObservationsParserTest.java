@@ -0,0 +1,126 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.PhenomenonCategory;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObservationsParserTest {
+    private ObservationsParser observationsParser;
+
+    @BeforeEach
+    void setUp() {
+        observationsParser = new ObservationsParser();
+    }
+
+    private InputStream observations() {
+        return getClass().getResourceAsStream("/observations.xml");
+    }
+
+    /**
+     * Test that weather data of the requested stations is parsed from the observations feed
+     */
+    @Test
+    void parse() throws XMLStreamException {
+        List<WeatherData> weatherDataList = observationsParser.parse(observations(), Set.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu"));
+
+        assertEquals(3, weatherDataList.size());
+        WeatherData tartu = weatherDataList.stream().filter(w -> w.getName().equals("Tartu-Tõravere")).findFirst().orElseThrow();
+        assertEquals("26242", tartu.getWMO());
+        assertEquals(-12.3, tartu.getAir_temp());
+        assertEquals(11.2, tartu.getWind_speed());
+        assertEquals("Clear", tartu.getWeather_phenomenon());
+        assertEquals(Instant.ofEpochSecond(1679925600), tartu.getTimestamp());
+        assertEquals(58.264072222179834, tartu.getLatitude());
+        assertEquals(26.46130555576748, tartu.getLongitude());
+    }
+
+    /**
+     * Test that weather data of every station with air temperature and wind speed is parsed
+     */
+    @Test
+    void parseAll() throws XMLStreamException {
+        List<WeatherData> weatherDataList = observationsParser.parseAll(observations());
+
+        // 62 of the 100 stations in the feed have both air temperature and wind speed
+        assertEquals(62, weatherDataList.size());
+        assertTrue(weatherDataList.stream().anyMatch(w -> w.getName().equals("Tartu-Tõravere")));
+        assertTrue(weatherDataList.stream().anyMatch(w -> w.getName().equals("Kuressaare linn")));
+    }
+
+    /**
+     * Test that stations without air temperature or wind speed are left out
+     */
+    @Test
+    void parseStationWithoutWeatherData() throws XMLStreamException {
+        String xml = "<observations timestamp=\"1679925600\">"
+                + "<station><name>Pärnu</name><wmocode>41803</wmocode><phenomenon/><airtemperature/><windspeed/></station>"
+                + "<station><name>Tallinn-Harku</name><wmocode>26038</wmocode><phenomenon>Light rain</phenomenon>"
+                + "<airtemperature>2.5</airtemperature><windspeed>3</windspeed></station>"
+                + "</observations>";
+        List<WeatherData> weatherDataList = observationsParser.parse(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), Set.of("Tallinn-Harku", "Pärnu"));
+
+        assertEquals(1, weatherDataList.size());
+        assertEquals("Tallinn-Harku", weatherDataList.get(0).getName());
+        assertEquals("Light rain", weatherDataList.get(0).getWeather_phenomenon());
+        assertEquals(PhenomenonCategory.RAIN, weatherDataList.get(0).getPhenomenon_category());
+    }
+
+    /**
+     * Test that stations with a malformed air temperature or wind speed are left out and the other stations are parsed
+     */
+    @Test
+    void parseStationWithMalformedWeatherData() throws XMLStreamException {
+        String xml = "<observations timestamp=\"1679925600\">"
+                + "<station><name>Pärnu</name><wmocode>41803</wmocode><phenomenon/><airtemperature>n/a</airtemperature><windspeed>3</windspeed></station>"
+                + "<station><name>Kunda</name><wmocode>26045</wmocode><phenomenon/><airtemperature>1</airtemperature><windspeed>-</windspeed></station>"
+                + "<station><name>Tallinn-Harku</name><wmocode>26038</wmocode><phenomenon>Light rain</phenomenon>"
+                + "<airtemperature>2.5</airtemperature><windspeed>3</windspeed></station>"
+                + "</observations>";
+        List<WeatherData> weatherDataList = observationsParser.parseAll(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, weatherDataList.size());
+        assertEquals("Tallinn-Harku", weatherDataList.get(0).getName());
+        assertEquals(2.5, weatherDataList.get(0).getAir_temp());
+    }
+
+    /**
+     * Test that parsing stops once all requested stations are found, so the rest of the feed is not read
+     */
+    @Test
+    void parseStopsEarly() throws XMLStreamException {
+        String xml = "<observations timestamp=\"1679925600\">"
+                + "<station><name>Pärnu</name><airtemperature>1</airtemperature><windspeed>3</windspeed><phenomenon/></station>"
+                + "<station><name>Broken";
+        List<WeatherData> weatherDataList = observationsParser.parse(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), Set.of("Pärnu"));
+
+        assertEquals(1, weatherDataList.size());
+    }
+
+    /**
+     * Test that the observation time of the feed is used and an empty WMO code is stored as null
+     */
+    @Test
+    void parseTimestampAndMissingWmoCode() throws XMLStreamException {
+        String xml = "<observations timestamp=\"1679925600\">"
+                + "<station><name>Pärnu</name><wmocode/><airtemperature>1</airtemperature><windspeed>3</windspeed><phenomenon/></station>"
+                + "</observations>";
+        WeatherData parnu = observationsParser.parse(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), Set.of("Pärnu")).get(0);
+
+        assertEquals(Instant.parse("2023-03-27T14:00:00Z"), parnu.getTimestamp());
+        assertNull(parnu.getWMO());
+    }
+}
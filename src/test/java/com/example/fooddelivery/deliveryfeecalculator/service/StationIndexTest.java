@@ -0,0 +1,99 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StationIndexTest {
+    private static final Instant NOW = Instant.parse("2023-03-27T14:00:00Z");
+    private static final double UNLIMITED = Double.POSITIVE_INFINITY;
+
+    private WeatherData station(String name, Double latitude, Double longitude, double airTemp, Instant timestamp) {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName(name);
+        weatherData.setAir_temp(airTemp);
+        weatherData.setWind_speed(airTemp + 10);
+        weatherData.setWeather_phenomenon("Clear");
+        weatherData.setTimestamp(timestamp);
+        weatherData.setLatitude(latitude);
+        weatherData.setLongitude(longitude);
+        return weatherData;
+    }
+
+    private static double distance(WeatherData station, double latitude, double longitude) {
+        double dx = (station.getLongitude() - longitude) * Math.cos(Math.toRadians(58.7));
+        double dy = station.getLatitude() - latitude;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Test that the nearest station is the same as found by comparing every station, and stations without
+     * coordinates are left out
+     */
+    @Test
+    void nearest() {
+        Random random = new Random(42);
+        List<WeatherData> stations = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            stations.add(station("Station " + i, 57.5 + random.nextDouble() * 2.2, 21.8 + random.nextDouble() * 6.4, 0, NOW));
+        stations.add(station("Without coordinates", null, null, 0, NOW));
+        StationIndex stationIndex = StationIndex.build(stations);
+        assertEquals(200, stationIndex.size());
+
+        for (int i = 0; i < 1000; i++) {
+            double latitude = 57.5 + random.nextDouble() * 2.2;
+            double longitude = 21.8 + random.nextDouble() * 6.4;
+            WeatherData expected = stations.subList(0, 200).stream()
+                    .min(Comparator.comparingDouble(station -> distance(station, latitude, longitude))).orElseThrow();
+            assertSame(expected, stationIndex.nearest(latitude, longitude, UNLIMITED));
+        }
+        assertNull(StationIndex.EMPTY.nearest(58.4, 24.5, UNLIMITED));
+    }
+
+    /**
+     * Test that weather data is interpolated by the inverse squared distance, with the oldest observation time
+     * of the stations used, and the weather data of a station at the location is used as it is
+     */
+    @Test
+    void interpolate() {
+        WeatherData west = station("West", 58.0, 24.0, -10, NOW);
+        WeatherData east = station("East", 58.0, 25.0, 10, NOW.minusSeconds(3600));
+        WeatherData far = station("Far", 59.5, 27.0, 30, NOW);
+        StationIndex stationIndex = StationIndex.build(List.of(west, east, far));
+
+        // One third of the way from West to East: weights 1/(1/3)² and 1/(2/3)², so 4/5 of West and 1/5 of East
+        WeatherData interpolated = stationIndex.interpolate(58.0, 24.0 + 1 / 3.0, 2, UNLIMITED);
+        assertEquals(-10 * 0.8 + 10 * 0.2, interpolated.getAir_temp(), 1e-6);
+        assertEquals(0 * 0.8 + 20 * 0.2, interpolated.getWind_speed(), 1e-6);
+        assertEquals("West", interpolated.getName());
+        assertEquals(NOW.minusSeconds(3600), interpolated.getTimestamp());
+
+        assertSame(east, stationIndex.interpolate(58.0, 25.0, 3, UNLIMITED));
+        assertSame(west, stationIndex.interpolate(58.0, 24.1, 1, UNLIMITED));
+    }
+
+    /**
+     * Test that stations farther than the maximum distance are neither found nor interpolated from
+     */
+    @Test
+    void maxDistance() {
+        WeatherData west = station("West", 58.0, 24.0, -10, NOW);
+        WeatherData east = station("East", 58.0, 25.0, 10, NOW);
+        StationIndex stationIndex = StationIndex.build(List.of(west, east));
+
+        // A degree of longitude is about 59 km at latitude 58
+        assertSame(west, stationIndex.nearest(58.0, 24.2, 20));
+        assertNull(stationIndex.nearest(58.0, 24.5, 20));
+        assertNull(stationIndex.nearest(0, 0, 50));
+        assertSame(west, stationIndex.interpolate(58.0, 24.2, 2, 20)); // East is too far, West is used as it is
+        assertEquals(0, stationIndex.interpolate(58.0, 24.5, 2, 40).getAir_temp(), 1e-6);
+        assertNull(stationIndex.interpolate(0, 0, 2, 50));
+    }
+}
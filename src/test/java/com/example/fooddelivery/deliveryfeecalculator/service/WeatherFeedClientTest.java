@@ -0,0 +1,136 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherFeedClientTest {
+    private static final byte[] FEED = "<observations timestamp=\"1679925600\"></observations>".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private WeatherFeedClient client(Duration timeout, int maxAttempts) {
+        return new WeatherFeedClient("http://localhost:" + server.getAddress().getPort() + "/observations.php",
+                Duration.ofSeconds(1), timeout, maxAttempts, Duration.ofMillis(10));
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static Throwable failure(WeatherFeedClient client) {
+        CompletionException e = assertThrows(CompletionException.class, () -> client.fetch().join());
+        return e.getCause();
+    }
+
+    /**
+     * Test that an unchanged feed is not downloaded again and the feed is downloaded again after invalidation
+     */
+    @Test
+    void testConditionalGet() {
+        server.createContext("/observations.php", exchange -> {
+            requests.incrementAndGet();
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifNoneMatch.add(String.valueOf(etag));
+            if ("\"v1\"".equals(etag)) {
+                respond(exchange, 304, new byte[0]);
+                return;
+            }
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            respond(exchange, 200, FEED);
+        });
+        WeatherFeedClient client = client(Duration.ofSeconds(5), 1);
+
+        assertArrayEquals(FEED, client.fetch().join().orElseThrow());
+        assertEquals(Optional.empty(), client.fetch().join());
+        client.invalidate();
+        assertArrayEquals(FEED, client.fetch().join().orElseThrow());
+        assertEquals(List.of("null", "\"v1\"", "null"), ifNoneMatch);
+    }
+
+    /**
+     * Test that server errors are retried until the feed is fetched
+     */
+    @Test
+    void testRetry() {
+        server.createContext("/observations.php", exchange -> {
+            if (requests.incrementAndGet() < 3) respond(exchange, 503, new byte[0]);
+            else respond(exchange, 200, FEED);
+        });
+
+        assertArrayEquals(FEED, client(Duration.ofSeconds(5), 3).fetch().join().orElseThrow());
+        assertEquals(3, requests.get());
+    }
+
+    /**
+     * Test that client errors are not retried
+     */
+    @Test
+    void testClientErrorIsNotRetried() {
+        server.createContext("/observations.php", exchange -> {
+            requests.incrementAndGet();
+            respond(exchange, 404, new byte[0]);
+        });
+
+        Throwable e = failure(client(Duration.ofSeconds(5), 3));
+        assertInstanceOf(WeatherFeedClient.UnexpectedStatusException.class, e);
+        assertEquals(404, ((WeatherFeedClient.UnexpectedStatusException) e).getStatus());
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Test that a hanging endpoint can not block the fetch longer than the timeouts of all the attempts
+     */
+    @Test
+    void testTimeout() {
+        server.createContext("/observations.php", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, FEED.length);
+            try {
+                Thread.sleep(5000); // Response body never arrives in time
+            } catch (InterruptedException ignored) {
+            }
+            exchange.close();
+        });
+
+        long start = System.nanoTime();
+        Throwable e = failure(client(Duration.ofMillis(200), 2));
+        assertTrue(e instanceof TimeoutException || e instanceof IOException, e.toString());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+        assertEquals(2, requests.get());
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.DeliveryFeeCalculatorApplication;
+import com.example.fooddelivery.deliveryfeecalculator.model.FeeResult;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two instances of the application sharing one embedded database, importing from local copies of the observations
+ * and forecast feeds.
+ */
+class WeatherImportCoordinatorTest {
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicInteger forecastFetches = new AtomicInteger();
+    private HttpServer feed;
+    private ConfigurableApplicationContext first;
+    private ConfigurableApplicationContext second;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        byte[] observations;
+        try (InputStream in = getClass().getResourceAsStream("/observations.xml")) {
+            observations = in.readAllBytes();
+        }
+        byte[] forecast;
+        try (InputStream in = getClass().getResourceAsStream("/forecast.xml")) {
+            forecast = in.readAllBytes();
+        }
+        feed = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        feed.createContext("/observations.php", exchange -> {
+            fetches.incrementAndGet();
+            exchange.sendResponseHeaders(200, observations.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(observations);
+            }
+        });
+        feed.createContext("/forecast.php", exchange -> {
+            forecastFetches.incrementAndGet();
+            exchange.sendResponseHeaders(200, forecast.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(forecast);
+            }
+        });
+        feed.start();
+
+        String database = "jdbc:h2:mem:cluster-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        first = start(database);
+        second = start(database);
+    }
+
+    private ConfigurableApplicationContext start(String database) {
+        return new SpringApplicationBuilder(DeliveryFeeCalculatorApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + database,
+                        "--app.weather.url=http://localhost:" + feed.getAddress().getPort() + "/observations.php",
+                        "--app.weather.cron=-",
+                        "--app.weather.retention.cron=-",
+                        "--app.weather.forecast.url=http://localhost:" + feed.getAddress().getPort() + "/forecast.php",
+                        "--app.weather.forecast.import-on-startup=false",
+                        "--app.cluster.sync-rate=3600000",
+                        "--app.cities.refresh-rate=3600000",
+                        "--app.fee.rules.refresh-rate=3600000",
+                        "--logging.level.org.springframework.jdbc=WARN");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (first != null) first.close();
+        if (second != null) second.close();
+        feed.stop(0);
+    }
+
+    /**
+     * Test that a scheduled import fired on both instances at the same time fetches the feed once,
+     * and the other instance publishes the imported weather data from the database
+     */
+    @Test
+    void importOnOneInstance() throws Exception {
+        WeatherImportCoordinator firstCoordinator = first.getBean(WeatherImportCoordinator.class);
+        WeatherImportCoordinator secondCoordinator = second.getBean(WeatherImportCoordinator.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<Boolean>> imports = executor.invokeAll(List.<Callable<Boolean>>of(
+                firstCoordinator::runScheduledImport, secondCoordinator::runScheduledImport));
+        executor.shutdown();
+        boolean firstImported = imports.get(0).get(10, TimeUnit.SECONDS);
+        boolean secondImported = imports.get(1).get(10, TimeUnit.SECONDS);
+        assertNotEquals(firstImported, secondImported);
+        assertEquals(1, fetches.get());
+
+        DeliveryFeeCalculatorService importer = (firstImported ? first : second).getBean(DeliveryFeeCalculatorService.class);
+        DeliveryFeeCalculatorService follower = (firstImported ? second : first).getBean(DeliveryFeeCalculatorService.class);
+        assertTrue(importer.quote("Tartu", "car").isSuccess());
+        assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, follower.quote("Tartu", "car").getOutcome());
+
+        assertTrue((firstImported ? secondCoordinator : firstCoordinator).synchronize());
+        assertFalse((firstImported ? secondCoordinator : firstCoordinator).synchronize());
+        assertEquals(importer.quote("Tartu", "car"), follower.quote("Tartu", "car"));
+        assertEquals(importer.getSnapshotVersion(), follower.getSnapshotVersion());
+
+        // The lease is kept for lock-at-least, so instances with a clock behind do not import the same tick again
+        assertFalse(firstCoordinator.runScheduledImport());
+        assertFalse(secondCoordinator.runScheduledImport());
+        // Requested imports take the same lease
+        assertTrue(firstCoordinator.runRequestedImport().isEmpty());
+        assertEquals(1, fetches.get());
+    }
+
+    /**
+     * Test that a requested import releases the lease when it completes, and a requested import made while another
+     * instance is importing is coalesced with that import
+     */
+    @Test
+    void requestedImport() throws Exception {
+        WeatherImportCoordinator firstCoordinator = first.getBean(WeatherImportCoordinator.class);
+        WeatherImportCoordinator secondCoordinator = second.getBean(WeatherImportCoordinator.class);
+        assertTrue(firstCoordinator.runRequestedImport().orElseThrow() > 0);
+        assertTrue(secondCoordinator.runRequestedImport().isPresent());
+
+        CountDownLatch importing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SchedulerLock schedulerLock = first.getBean(SchedulerLock.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> running = executor.submit(() -> schedulerLock.runExclusively(WeatherImportCoordinator.IMPORT_TASK, () -> {
+            importing.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(importing.await(10, TimeUnit.SECONDS));
+        assertTrue(secondCoordinator.runRequestedImport().isEmpty());
+        release.countDown();
+        assertTrue(running.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(2, fetches.get());
+    }
+
+    /**
+     * Test that a scheduled forecast import fired on both instances at the same time fetches the forecast once,
+     * and the other instance publishes the imported forecast from the database, also after a restart
+     */
+    @Test
+    void importForecastOnOneInstance() throws Exception {
+        ForecastFeeService firstService = first.getBean(ForecastFeeService.class);
+        ForecastFeeService secondService = second.getBean(ForecastFeeService.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<Boolean>> imports = executor.invokeAll(List.<Callable<Boolean>>of(
+                firstService::runScheduledImport, secondService::runScheduledImport));
+        executor.shutdown();
+        boolean firstImported = imports.get(0).get(10, TimeUnit.SECONDS);
+        boolean secondImported = imports.get(1).get(10, TimeUnit.SECONDS);
+        assertNotEquals(firstImported, secondImported);
+        assertEquals(1, forecastFetches.get());
+
+        ForecastFeeService importer = firstImported ? firstService : secondService;
+        ForecastFeeService follower = firstImported ? secondService : firstService;
+        Instant deliverAt = Instant.parse("2023-03-02T12:00:00Z");
+        assertTrue(importer.quote("Tartu", "bike", deliverAt).isSuccess());
+        assertEquals(FeeResult.Outcome.NO_WEATHER_DATA, follower.quote("Tartu", "bike", deliverAt).getOutcome());
+
+        assertTrue(follower.synchronize());
+        assertFalse(follower.synchronize());
+        assertEquals(importer.quote("Tartu", "bike", deliverAt), follower.quote("Tartu", "bike", deliverAt));
+
+        // A new instance publishes the stored forecast at startup, without fetching it
+        String database = first.getEnvironment().getProperty("spring.datasource.url");
+        (firstImported ? second : first).close();
+        ConfigurableApplicationContext restarted = start(database);
+        if (firstImported) second = restarted;
+        else first = restarted;
+        assertEquals(importer.quote("Tartu", "bike", deliverAt), restarted.getBean(ForecastFeeService.class).quote("Tartu", "bike", deliverAt));
+        assertEquals(1, forecastFetches.get());
+    }
+}
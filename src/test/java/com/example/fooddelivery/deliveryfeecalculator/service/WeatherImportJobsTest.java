@@ -0,0 +1,111 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.ImportJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class WeatherImportJobsTest {
+    private final WeatherImportCoordinator weatherImportCoordinator = mock(WeatherImportCoordinator.class);
+    private final DeliveryFeeMetrics deliveryFeeMetrics = mock(DeliveryFeeMetrics.class);
+    private final WeatherImportJobs weatherImportJobs = new WeatherImportJobs(weatherImportCoordinator, deliveryFeeMetrics, 2);
+
+    @AfterEach
+    void tearDown() {
+        weatherImportJobs.close();
+    }
+
+    private ImportJob awaitFinished(long id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            ImportJob job = weatherImportJobs.find(id).orElseThrow();
+            if (!job.isActive()) return job;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Import job " + id + " did not finish");
+    }
+
+    /**
+     * Test that requests made while an import is running get the running job and cause a single import
+     */
+    @Test
+    void concurrentRequestsShareJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(weatherImportCoordinator.runRequestedImport()).thenAnswer(invocation -> {
+            started.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return OptionalInt.of(5);
+        });
+
+        ImportJob first = weatherImportJobs.submit();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        ImportJob second = weatherImportJobs.submit();
+        assertEquals(first.getId(), second.getId());
+        assertEquals(ImportJob.Status.RUNNING, second.getStatus());
+        release.countDown();
+
+        ImportJob finished = awaitFinished(first.getId());
+        assertEquals(ImportJob.Status.SUCCEEDED, finished.getStatus());
+        assertEquals(5, finished.getImported());
+        assertNotNull(finished.getDurationMillis());
+        verify(weatherImportCoordinator, times(1)).runRequestedImport();
+        verify(deliveryFeeMetrics).recordImportJob(eq("succeeded"), anyLong());
+
+        // A request after the job has finished starts a new import
+        ImportJob next = weatherImportJobs.submit();
+        assertNotEquals(first.getId(), next.getId());
+        awaitFinished(next.getId());
+        verify(weatherImportCoordinator, times(2)).runRequestedImport();
+    }
+
+    /**
+     * Test that a failed import is reported in the job status and only the latest jobs are kept
+     */
+    @Test
+    void failedJob() throws Exception {
+        when(weatherImportCoordinator.runRequestedImport()).thenThrow(new IllegalStateException("Database is unavailable"));
+
+        ImportJob first = weatherImportJobs.submit();
+        ImportJob failed = awaitFinished(first.getId());
+        assertEquals(ImportJob.Status.FAILED, failed.getStatus());
+        assertEquals("Database is unavailable", failed.getError());
+        assertNull(failed.getImported());
+
+        awaitFinished(weatherImportJobs.submit().getId());
+        awaitFinished(weatherImportJobs.submit().getId());
+        assertTrue(weatherImportJobs.find(first.getId()).isEmpty());
+    }
+
+    /**
+     * Test that a job whose import was run by another instance is reported as coalesced
+     */
+    @Test
+    void coalescedJob() throws Exception {
+        when(weatherImportCoordinator.runRequestedImport()).thenReturn(OptionalInt.empty());
+
+        ImportJob job = awaitFinished(weatherImportJobs.submit().getId());
+        assertEquals(ImportJob.Status.COALESCED, job.getStatus());
+        assertNull(job.getImported());
+        verify(deliveryFeeMetrics).recordImportJob(eq("coalesced"), anyLong());
+    }
+
+    /**
+     * Test that a job that fails with an error is finished, so later requests start a new import
+     */
+    @Test
+    void errorFinishesJob() throws Exception {
+        when(weatherImportCoordinator.runRequestedImport()).thenThrow(new StackOverflowError()).thenReturn(OptionalInt.of(3));
+
+        ImportJob failed = awaitFinished(weatherImportJobs.submit().getId());
+        assertEquals(ImportJob.Status.FAILED, failed.getStatus());
+        ImportJob next = weatherImportJobs.submit();
+        assertNotEquals(failed.getId(), next.getId());
+        assertEquals(3, awaitFinished(next.getId()).getImported());
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.DailyWeather;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.repository.DailyWeatherRepository;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@DataJdbcTest
+class WeatherRetentionServiceTest {
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    @Autowired
+    private DailyWeatherRepository dailyWeatherRepository;
+
+    private WeatherData weatherData(String name, Instant timestamp, double airTemp, double windSpeed, String phenomenon) {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName(name);
+        weatherData.setAir_temp(airTemp);
+        weatherData.setWind_speed(windSpeed);
+        weatherData.setWeather_phenomenon(phenomenon);
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
+
+    /**
+     * Test that weather data of the days before the cutoff is compacted into daily aggregates and deleted in batches
+     */
+    @Test
+    void removeWeatherDataBefore() {
+        LocalDate day = LocalDate.of(2023, 3, 1);
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        for (int hour = 0; hour < 24; hour++) {
+            weatherDataList.add(weatherData("Pärnu", day.atTime(hour, 15).atZone(ZONE).toInstant(), hour - 5, hour / 2.0, hour == 12 ? "Light snow shower" : "Light rain"));
+            weatherDataList.add(weatherData("Pärnu", day.plusDays(1).atTime(hour, 15).atZone(ZONE).toInstant(), 1, 1, "Clear"));
+            weatherDataList.add(weatherData("Pärnu", day.plusDays(2).atTime(hour, 15).atZone(ZONE).toInstant(), 1, 1, "Clear"));
+        }
+        weatherDataRepository.upsertAll(weatherDataList);
+
+        WeatherRetentionService weatherRetentionService = new WeatherRetentionService(
+                weatherDataRepository, dailyWeatherRepository, mock(SchedulerLock.class), Duration.ofDays(30), 10, true);
+        int deleted = weatherRetentionService.removeWeatherDataBefore(day.plusDays(2).atTime(12, 0).atZone(ZONE).toInstant());
+
+        // Weather data of the first two days is removed, weather data of the day of the cutoff is kept
+        assertEquals(48, deleted);
+        assertEquals(24, weatherDataRepository.count());
+        assertEquals(day.plusDays(2), weatherDataRepository.findOldest().orElseThrow().getTimestamp().atZone(ZONE).toLocalDate());
+
+        DailyWeather firstDay = dailyWeatherRepository.findByNameAndDate("Pärnu", day).orElseThrow();
+        assertEquals(-5, firstDay.getMin_air_temp());
+        assertEquals(18, firstDay.getMax_air_temp());
+        assertEquals(11.5, firstDay.getMax_wind_speed());
+        assertEquals("Light snow shower", firstDay.getWorst_phenomenon());
+        assertEquals("Clear", dailyWeatherRepository.findByNameAndDate("Pärnu", day.plusDays(1)).orElseThrow().getWorst_phenomenon());
+    }
+
+    /**
+     * Test that weather data is only deleted if downsampling is disabled
+     */
+    @Test
+    void removeWeatherDataBeforeWithoutDownsampling() {
+        Instant timestamp = Instant.parse("2023-03-01T12:15:00Z");
+        weatherDataRepository.upsertAll(List.of(weatherData("Pärnu", timestamp, 1, 1, "Clear")));
+
+        WeatherRetentionService weatherRetentionService = new WeatherRetentionService(
+                weatherDataRepository, dailyWeatherRepository, mock(SchedulerLock.class), Duration.ofDays(30), 10, false);
+
+        assertEquals(1, weatherRetentionService.removeWeatherDataBefore(timestamp.plus(1, ChronoUnit.DAYS)));
+        assertEquals(0, weatherDataRepository.count());
+        assertEquals(0, dailyWeatherRepository.count());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.fooddelivery.deliveryfeecalculator.service;
+
+import com.example.fooddelivery.deliveryfeecalculator.model.PhenomenonCategory;
+import com.example.fooddelivery.deliveryfeecalculator.model.WeatherData;
+import com.example.fooddelivery.deliveryfeecalculator.repository.WeatherDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class WeatherTimelineTest {
+    private WeatherDataRepository weatherDataRepository;
+    private WeatherTimeline weatherTimeline;
+
+    @BeforeEach
+    void setUp() {
+        weatherDataRepository = mock(WeatherDataRepository.class);
+        weatherTimeline = new WeatherTimeline(weatherDataRepository, Duration.ofHours(24));
+    }
+
+    private WeatherData weatherData(String name, Instant timestamp) {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setName(name);
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
+
+    /**
+     * Test that the latest weather data at or before the given time is found from the timeline
+     */
+    @Test
+    void findAt() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        WeatherData older = weatherData("Pärnu", now.minus(2, ChronoUnit.HOURS));
+        older.setWMO("41803");
+        older.setAir_temp(-2.1);
+        older.setWind_speed(4.7);
+        older.setWeather_phenomenon("Light snow shower");
+        WeatherData newer = weatherData("Pärnu", now.minus(1, ChronoUnit.HOURS));
+        newer.setWMO("41803");
+        newer.setAir_temp(0.3);
+        newer.setWind_speed(12.4);
+        weatherTimeline.add(List.of(newer, older, weatherData("Tallinn-Harku", now)));
+
+        assertEquals(older, weatherTimeline.findAt("Pärnu", now.minus(2, ChronoUnit.HOURS)).orElseThrow());
+        assertEquals(older, weatherTimeline.findAt("Pärnu", now.minus(90, ChronoUnit.MINUTES)).orElseThrow());
+        assertEquals(PhenomenonCategory.SNOW, weatherTimeline.findAt("Pärnu", now.minus(90, ChronoUnit.MINUTES)).orElseThrow().getPhenomenon_category());
+        assertEquals(newer, weatherTimeline.findAt("Pärnu", now).orElseThrow());
+        assertEquals(newer, weatherTimeline.findLatest("Pärnu").orElseThrow());
+        verifyNoInteractions(weatherDataRepository);
+    }
+
+    /**
+     * Test that weather data older than the timeline is looked up from the database
+     */
+    @Test
+    void findAtBeforeTimeline() {
+        Instant now = Instant.now();
+        WeatherData stored = weatherData("Pärnu", now.minus(3, ChronoUnit.DAYS));
+        when(weatherDataRepository.findLatestByNameAt("Pärnu", now.minus(2, ChronoUnit.DAYS))).thenReturn(Optional.of(stored));
+        weatherTimeline.add(List.of(weatherData("Pärnu", now.minus(1, ChronoUnit.HOURS)), weatherData("Pärnu", now.minus(2, ChronoUnit.DAYS))));
+
+        // Weather data older than the window is not kept in the timeline
+        assertSame(stored, weatherTimeline.findAt("Pärnu", now.minus(2, ChronoUnit.DAYS)).orElseThrow());
+        assertTrue(weatherTimeline.findAt("Tartu-Tõravere", now).isEmpty());
+        assertEquals(1, weatherTimeline.size());
+    }
+
+    /**
+     * Test that observations added in any order over several chunks are kept sorted, observations at the same time
+     * are replaced and the observations of a period are found
+     */
+    @Test
+    void findBetween() {
+        Instant start = Instant.now().minus(20, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+        int count = WeatherTimeline.CHUNK_SIZE * 3;
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            WeatherData weatherData = weatherData("Pärnu", start.plusSeconds(i * 10L));
+            weatherData.setAir_temp(i / 10.0);
+            weatherDataList.add(weatherData);
+        }
+        List<WeatherData> shuffled = new ArrayList<>(weatherDataList);
+        Collections.shuffle(shuffled);
+        weatherTimeline.add(shuffled.subList(0, count / 2));
+        weatherTimeline.add(shuffled.subList(count / 2, count));
+        weatherDataList.get(100).setAir_temp(-5.5);
+        weatherTimeline.add(List.of(weatherDataList.get(100)));
+
+        assertEquals(count, weatherTimeline.size());
+        assertEquals(weatherDataList, weatherTimeline.findBetween("Pärnu", start, start.plusSeconds(count * 10L)));
+        assertEquals(weatherDataList.subList(100, 2500),
+                weatherTimeline.findBetween("Pärnu", start.plusSeconds(995), start.plusSeconds(25_000)));
+        assertEquals(weatherDataList.get(count - 1), weatherTimeline.findLatest("Pärnu").orElseThrow());
+        verifyNoInteractions(weatherDataRepository);
+
+        // The period starts before the timeline
+        weatherTimeline.findBetween("Pärnu", start.minusSeconds(1), start);
+        verify(weatherDataRepository).findByNameBetween("Pärnu", start.minusSeconds(1), start);
+    }
+}